@@ -0,0 +1,171 @@
+package com.winthier.worlds;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Keep track of the plugin chunk tickets of the KeepLoaded areas in
+ * each world. Reconciling only touches the difference between the
+ * tickets in place and the desired ones. New tickets are added a few
+ * per tick so that loading a world does not load all areas at once.
+ *
+ * Other components may temporarily hold chunks. Since all plugin
+ * tickets of this plugin are one and the same, a chunk keeps its
+ * ticket while it is either wanted or held.
+ */
+@RequiredArgsConstructor
+final class ChunkTickets {
+    private final WorldsPlugin plugin;
+    private final Map<String, Tickets> worlds = new HashMap<>();
+    private BukkitTask task;
+
+    private static final class Tickets {
+        private Set<Long> wanted = Set.of();
+        private final Set<Long> applied = new HashSet<>();
+        private final ArrayDeque<Long> queue = new ArrayDeque<>();
+        private final Map<Long, Integer> holds = new HashMap<>();
+
+        private boolean isEmpty() {
+            return applied.isEmpty() && queue.isEmpty() && holds.isEmpty();
+        }
+    }
+
+    void reconcile(World world, Set<Long> desired) {
+        Tickets tickets = worlds.get(world.getName());
+        if (tickets == null) {
+            if (desired.isEmpty()) return;
+            tickets = new Tickets();
+            worlds.put(world.getName(), tickets);
+        }
+        tickets.wanted = desired;
+        for (Iterator<Long> iter = tickets.applied.iterator(); iter.hasNext();) {
+            long key = iter.next();
+            if (desired.contains(key)) continue;
+            if (!tickets.holds.containsKey(key)) {
+                world.removePluginChunkTicket(chunkX(key), chunkZ(key), plugin);
+            }
+            iter.remove();
+        }
+        tickets.queue.clear();
+        for (long key : desired) {
+            if (!tickets.applied.contains(key)) tickets.queue.add(key);
+        }
+        if (tickets.isEmpty()) {
+            worlds.remove(world.getName());
+        } else if (!tickets.queue.isEmpty() && task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    private void tick() {
+        int budget = Math.max(1, plugin.getConfig().getInt("tickets.PerTick", 8));
+        boolean pending = false;
+        for (Map.Entry<String, Tickets> entry : worlds.entrySet()) {
+            Tickets tickets = entry.getValue();
+            if (tickets.queue.isEmpty()) continue;
+            World world = plugin.getServer().getWorld(entry.getKey());
+            if (world == null) {
+                tickets.queue.clear();
+                continue;
+            }
+            while (budget > 0 && !tickets.queue.isEmpty()) {
+                long key = tickets.queue.poll();
+                if (!tickets.wanted.contains(key) || !tickets.applied.add(key)) continue;
+                world.addPluginChunkTicket(chunkX(key), chunkZ(key), plugin);
+                budget -= 1;
+            }
+            if (!tickets.queue.isEmpty()) pending = true;
+        }
+        if (!pending) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Hold a loaded chunk until it is released. Holds are counted.
+     */
+    void hold(World world, long key) {
+        Tickets tickets = worlds.computeIfAbsent(world.getName(), n -> new Tickets());
+        if (tickets.holds.merge(key, 1, Integer::sum) == 1 && !tickets.applied.contains(key)) {
+            world.addPluginChunkTicket(chunkX(key), chunkZ(key), plugin);
+        }
+    }
+
+    /**
+     * Release a chunk held via hold(). Its ticket is removed unless
+     * the chunk is still held or part of a KeepLoaded area.
+     */
+    void release(World world, long key) {
+        Tickets tickets = worlds.get(world.getName());
+        if (tickets == null) return;
+        Integer count = tickets.holds.get(key);
+        if (count == null) return;
+        if (count > 1) {
+            tickets.holds.put(key, count - 1);
+            return;
+        }
+        tickets.holds.remove(key);
+        if (!tickets.applied.contains(key)) {
+            world.removePluginChunkTicket(chunkX(key), chunkZ(key), plugin);
+        }
+        if (tickets.isEmpty()) worlds.remove(world.getName());
+    }
+
+    /**
+     * Forget about a world which is being unloaded. Its tickets go
+     * with it.
+     */
+    void clear(World world) {
+        worlds.remove(world.getName());
+    }
+
+    /**
+     * Release all tickets of worlds which are not in the given set of
+     * names, such as those removed from the configuration.
+     */
+    void retain(Set<String> names) {
+        for (String name : List.copyOf(worlds.keySet())) {
+            if (names.contains(name)) continue;
+            World world = plugin.getServer().getWorld(name);
+            if (world != null) {
+                reconcile(world, Set.of());
+            } else {
+                worlds.remove(name);
+            }
+        }
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (String name : worlds.keySet()) {
+            World world = plugin.getServer().getWorld(name);
+            if (world != null) world.removePluginChunkTickets(plugin);
+        }
+        worlds.clear();
+    }
+
+    static long chunkKey(int x, int z) {
+        return Chunk.getChunkKey(x, z);
+    }
+
+    static int chunkX(long key) {
+        return (int) key;
+    }
+
+    static int chunkZ(long key) {
+        return (int) (key >> 32);
+    }
+}
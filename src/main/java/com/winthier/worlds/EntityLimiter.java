@@ -0,0 +1,185 @@
+package com.winthier.worlds;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.SpawnCategory;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Enforce the EntityLimits of each world. Living entities are counted
+ * per chunk as they are added to and removed from the world, so a
+ * spawn check is a few lookups in a primitive map and never scans a
+ * chunk. An entity is counted in the chunk where it was added.
+ * Since entities move, a few of them are checked every tick, round
+ * robin, and recounted in their current chunk if it changed.
+ *
+ * Count keys pack the chunk coordinates, 22 bits each, and a 20 bit
+ * slot: the total, one per spawn category and one per entity type.
+ * Only slots with a configured limit are counted.
+ */
+@RequiredArgsConstructor
+final class EntityLimiter {
+    private static final int SLOT_TOTAL = 0;
+    private static final int SLOT_CATEGORY = 1;
+    private static final int SLOT_TYPE = SLOT_CATEGORY + SpawnCategory.values().length;
+    private static final int COORD_MASK = 0x3FFFFF;
+    private static final int RECHECK_PER_TICK = 256;
+    private final WorldsPlugin plugin;
+    private final Map<String, Density> worlds = new HashMap<>();
+    private BukkitTask task;
+
+    @RequiredArgsConstructor
+    private static final class Density {
+        private final MyWorld.EntityLimits limits;
+        private final LongLongMap counts = new LongLongMap();
+        private final Map<Integer, Tracked> entities = new HashMap<>();
+        private final ArrayDeque<Tracked> recheck = new ArrayDeque<>();
+    }
+
+    /**
+     * An entity and the chunk it is counted in. A new instance is
+     * made each time an entity is added, so that entries of earlier
+     * additions left in the recheck queue can be told apart.
+     */
+    @RequiredArgsConstructor
+    private static final class Tracked {
+        private final Entity entity;
+        private long base;
+    }
+
+    /**
+     * Set the limits of a world and count all its entities once.
+     */
+    void configure(World world, MyWorld.EntityLimits limits) {
+        if (limits == null || limits.isEmpty()) {
+            worlds.remove(world.getName());
+            return;
+        }
+        Density density = new Density(limits);
+        for (LivingEntity entity : world.getLivingEntities()) {
+            add(density, entity);
+        }
+        worlds.put(world.getName(), density);
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    void clear(World world) {
+        worlds.remove(world.getName());
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        worlds.clear();
+    }
+
+    /**
+     * Move the counts of entities which left the chunk they are
+     * counted in, a bounded number per tick.
+     */
+    private void tick() {
+        if (worlds.isEmpty()) {
+            task.cancel();
+            task = null;
+            return;
+        }
+        final int budget = Math.max(1, RECHECK_PER_TICK / worlds.size());
+        for (Density density : worlds.values()) {
+            for (int i = 0; i < budget && !density.recheck.isEmpty(); i += 1) {
+                Tracked tracked = density.recheck.poll();
+                final Entity entity = tracked.entity;
+                // Stale entry of an entity which was removed or re-added
+                if (density.entities.get(entity.getEntityId()) != tracked) continue;
+                if (!entity.isValid()) {
+                    remove(density, entity);
+                    continue;
+                }
+                Location location = entity.getLocation();
+                final long base = chunkBase(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+                if (base != tracked.base) {
+                    count(density, tracked.base, entity.getType(), entity.getSpawnCategory(), -1L);
+                    count(density, base, entity.getType(), entity.getSpawnCategory(), 1L);
+                    tracked.base = base;
+                }
+                density.recheck.add(tracked);
+            }
+        }
+    }
+
+    void onAdd(Entity entity) {
+        if (!(entity instanceof LivingEntity)) return;
+        Density density = worlds.get(entity.getWorld().getName());
+        if (density != null) add(density, entity);
+    }
+
+    void onRemove(Entity entity) {
+        if (!(entity instanceof LivingEntity)) return;
+        Density density = worlds.get(entity.getWorld().getName());
+        if (density == null || !density.entities.containsKey(entity.getEntityId())) return;
+        remove(density, entity);
+    }
+
+    /**
+     * Check if an entity may spawn at a location.
+     */
+    boolean isAllowed(Location location, Entity entity) {
+        Density density = worlds.get(location.getWorld().getName());
+        if (density == null) return true;
+        final long base = chunkBase(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        final MyWorld.EntityLimits limits = density.limits;
+        Integer limit = limits.getPerChunk();
+        if (limit != null && density.counts.get(base | SLOT_TOTAL) >= limit) return false;
+        SpawnCategory category = entity.getSpawnCategory();
+        limit = limits.getSpawnCategories().get(category);
+        if (limit != null && density.counts.get(base | (SLOT_CATEGORY + category.ordinal())) >= limit) return false;
+        EntityType type = entity.getType();
+        limit = limits.getTypes().get(type);
+        if (limit != null && density.counts.get(base | (SLOT_TYPE + type.ordinal())) >= limit) return false;
+        return true;
+    }
+
+    private static void add(Density density, Entity entity) {
+        if (entity instanceof Player) return;
+        if (density.entities.containsKey(entity.getEntityId())) return;
+        Location location = entity.getLocation();
+        Tracked tracked = new Tracked(entity);
+        tracked.base = chunkBase(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        density.entities.put(entity.getEntityId(), tracked);
+        density.recheck.add(tracked);
+        count(density, tracked.base, entity.getType(), entity.getSpawnCategory(), 1L);
+    }
+
+    private static void remove(Density density, Entity entity) {
+        Tracked tracked = density.entities.remove(entity.getEntityId());
+        count(density, tracked.base, entity.getType(), entity.getSpawnCategory(), -1L);
+    }
+
+    private static void count(Density density, long base, EntityType type, SpawnCategory category, long delta) {
+        final MyWorld.EntityLimits limits = density.limits;
+        if (limits.getPerChunk() != null) {
+            density.counts.addTo(base | SLOT_TOTAL, delta);
+        }
+        if (limits.getSpawnCategories().containsKey(category)) {
+            density.counts.addTo(base | (SLOT_CATEGORY + category.ordinal()), delta);
+        }
+        if (limits.getTypes().containsKey(type)) {
+            density.counts.addTo(base | (SLOT_TYPE + type.ordinal()), delta);
+        }
+    }
+
+    private static long chunkBase(int x, int z) {
+        return ((long) (x & COORD_MASK) << 42) | ((long) (z & COORD_MASK) << 20);
+    }
+}
@@ -0,0 +1,47 @@
+package com.winthier.worlds;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityBreedEvent;
+import org.bukkit.event.entity.SpawnerSpawnEvent;
+
+@RequiredArgsConstructor
+final class EntityListener implements Listener {
+    final WorldsPlugin plugin;
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityAddToWorld(EntityAddToWorldEvent event) {
+        plugin.getEntityLimiter().onAdd(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemoveFromWorld(EntityRemoveFromWorldEvent event) {
+        plugin.getEntityLimiter().onRemove(event.getEntity());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onCreatureSpawn(CreatureSpawnEvent event) {
+        if (!plugin.getEntityLimiter().isAllowed(event.getLocation(), event.getEntity())) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onSpawnerSpawn(SpawnerSpawnEvent event) {
+        if (!plugin.getEntityLimiter().isAllowed(event.getLocation(), event.getEntity())) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onEntityBreed(EntityBreedEvent event) {
+        if (!plugin.getEntityLimiter().isAllowed(event.getMother().getLocation(), event.getEntity())) {
+            event.setCancelled(true);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.winthier.worlds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.WorldType;
+import org.bukkit.command.CommandSender;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Chunk generation benchmark. A throwaway world is created via
+ * MyWorld#getWorldCreator(), like any configured world, then a
+ * spiral of chunks far away from spawn is generated asynchronously
+ * with a fixed number of requests in flight. Afterwards, or when
+ * the plugin is disabled, the world is unloaded and deleted.
+ */
+@RequiredArgsConstructor
+final class GeneratorBench {
+    private static final String PREFIX = "worlds_bench_";
+    private static final int IN_FLIGHT = 8;
+    private static final int OFFSET = 10_000 >> 4;
+    static final int MAX_CHUNKS = 65536;
+    private final WorldsPlugin plugin;
+    private Run current;
+
+    @RequiredArgsConstructor
+    private static final class Run {
+        private final CommandSender sender;
+        private final World world;
+        private final String generatorName;
+        private final int[][] chunks;
+        private final long[] latencies;
+        private final long startTime;
+        private final long startHeap;
+        private int next;
+        private int done;
+        private int failed;
+    }
+
+    boolean isRunning() {
+        return current != null;
+    }
+
+    /**
+     * Start a benchmark. The generator may be null for the vanilla
+     * generator. The caller must check isRunning() first.
+     * @return false if the world could not be created
+     */
+    boolean start(CommandSender sender, String generator, World.Environment environment, int count) {
+        if (current != null) {
+            throw new IllegalStateException("Benchmark already running");
+        }
+        if (count < 1 || count > MAX_CHUNKS) {
+            throw new IllegalArgumentException("count=" + count);
+        }
+        MyWorld myWorld = new MyWorld(plugin, PREFIX + System.currentTimeMillis());
+        myWorld.setWorldType(WorldType.NORMAL);
+        myWorld.setEnvironment(environment);
+        myWorld.setGenerator(generator);
+        myWorld.setGenerateStructures(true);
+        MyWorld.Settings settings = new MyWorld.Settings();
+        settings.setKeepSpawnInMemory(false);
+        settings.setAutoSave(false);
+        myWorld.setSettings(settings);
+        World world = myWorld.getWorldCreator().createWorld();
+        if (world == null) return false;
+        world.setAutoSave(false);
+        final Runtime runtime = Runtime.getRuntime();
+        current = new Run(sender, world, generator != null ? generator : "vanilla",
+                          spiral(count), new long[count],
+                          System.nanoTime(), runtime.totalMemory() - runtime.freeMemory());
+        for (int i = 0; i < IN_FLIGHT; i += 1) {
+            request(current);
+        }
+        return true;
+    }
+
+    /**
+     * Abort a running benchmark, discarding its world.
+     */
+    void disable() {
+        if (current == null) return;
+        Run run = current;
+        current = null;
+        final Path folder = run.world.getWorldFolder().toPath();
+        final String name = run.world.getName();
+        if (!plugin.getServer().unloadWorld(run.world, false)) {
+            plugin.getLogger().severe("[" + name + "] Could not unload benchmark world");
+            return;
+        }
+        // The scheduler is no longer available
+        delete(name, folder);
+    }
+
+    private void request(Run run) {
+        if (current != run || run.next >= run.chunks.length) return;
+        final int index = run.next++;
+        final int[] chunk = run.chunks[index];
+        final long start = System.nanoTime();
+        run.world.getChunkAtAsync(OFFSET + chunk[0], OFFSET + chunk[1], true).whenComplete((result, throwable) -> {
+                if (throwable != null || result == null) {
+                    run.failed += 1;
+                    run.latencies[index] = -1L;
+                } else {
+                    run.latencies[index] = System.nanoTime() - start;
+                }
+                run.done += 1;
+                if (current != run) return;
+                if (run.done == run.chunks.length) {
+                    finish(run);
+                } else {
+                    request(run);
+                }
+            });
+    }
+
+    private void finish(Run run) {
+        final long nanos = System.nanoTime() - run.startTime;
+        final Runtime runtime = Runtime.getRuntime();
+        final long heap = runtime.totalMemory() - runtime.freeMemory() - run.startHeap;
+        long[] sorted = Arrays.stream(run.latencies).filter(l -> l >= 0L).sorted().toArray();
+        final int generated = sorted.length;
+        double chunksPerSecond = (double) generated * 1e9 / (double) nanos;
+        run.sender.sendMessage(text("Generator " + run.generatorName + " (" + run.world.getEnvironment().name().toLowerCase() + "): "
+                                    + generated + " chunks in " + (nanos / 1_000_000L) + "ms"
+                                    + (run.failed > 0 ? ", " + run.failed + " failed" : ""), YELLOW));
+        if (generated > 0) {
+            run.sender.sendMessage(text(String.format("%.1f chunks/s, p50 %.1fms, p99 %.1fms, heap %+d MiB",
+                                                      chunksPerSecond,
+                                                      percentile(sorted, 0.50) / 1e6,
+                                                      percentile(sorted, 0.99) / 1e6,
+                                                      heap >> 20), YELLOW));
+        }
+        current = null;
+        final Path folder = run.world.getWorldFolder().toPath();
+        final String name = run.world.getName();
+        if (!plugin.getServer().unloadWorld(run.world, false)) {
+            run.sender.sendMessage(text("Could not unload benchmark world " + name, RED));
+            return;
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> delete(name, folder));
+    }
+
+    private void delete(String name, Path folder) {
+        try {
+            Util.deleteRecursively(folder);
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.SEVERE, "[" + name + "] Deleting benchmark world", ioe);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Chunk offsets in a square spiral around 0,0.
+     */
+    private static int[][] spiral(int count) {
+        List<int[]> result = new ArrayList<>(count);
+        int x = 0;
+        int z = 0;
+        int dx = 0;
+        int dz = -1;
+        while (result.size() < count) {
+            result.add(new int[] {x, z});
+            if (x == z || (x < 0 && x == -z) || (x > 0 && x == 1 - z)) {
+                int tmp = dx;
+                dx = -dz;
+                dz = tmp;
+            }
+            x += dx;
+            z += dz;
+        }
+        return result.toArray(new int[0][]);
+    }
+}
@@ -0,0 +1,175 @@
+package com.winthier.worlds;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.bukkit.GameRules;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Put worlds with the Hibernate setting to sleep once they have
+ * been empty for the configured number of minutes: No mob spawning,
+ * minimal simulation distance, no time or weather, and no warm spawn
+ * chunks. KeepLoaded areas are essential and stay loaded. There are
+ * no vanilla spawn chunks to release any more.
+ *
+ * The previous values are restored as soon as a player arrives,
+ * before the world is imported or unloaded, and when the plugin is
+ * disabled. The configured game rules and settings are then applied
+ * on top, so that changes made while the world slept take effect.
+ * Since the world may still be saved while it sleeps, the previous
+ * values are also kept in hibernate.yml, so that they can be restored
+ * when the world is next applied, even after a crash.
+ */
+@RequiredArgsConstructor
+final class Hibernator {
+    private static final long CHECK_INTERVAL = 20L * 30L;
+    private static final int MIN_SIMULATION_DISTANCE = 2;
+    private final WorldsPlugin plugin;
+    private final Map<String, Long> emptySince = new HashMap<>();
+    private final Map<String, State> hibernating = new HashMap<>();
+    private BukkitTask task;
+
+    @Value
+    private static final class State {
+        private boolean allowMonsters;
+        private boolean allowAnimals;
+        private int simulationDistance;
+        private Boolean advanceTime;
+        private Boolean advanceWeather;
+    }
+
+    void enable() {
+        load();
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::check, CHECK_INTERVAL, CHECK_INTERVAL);
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (String name : new ArrayList<>(hibernating.keySet())) {
+            World world = plugin.getServer().getWorld(name);
+            if (world != null) wake(world);
+        }
+        // Worlds which are not loaded stay in hibernate.yml
+        hibernating.clear();
+        emptySince.clear();
+    }
+
+    boolean isHibernating(String name) {
+        return hibernating.containsKey(name);
+    }
+
+    private void check() {
+        final long now = System.currentTimeMillis();
+        for (MyWorld myWorld : plugin.getWorlds()) {
+            final String name = myWorld.getName();
+            MyWorld.Settings settings = myWorld.getEffectiveSettings();
+            Integer minutes = settings != null
+                ? settings.getHibernate()
+                : null;
+            World world = myWorld.getWorld();
+            if (minutes == null || world == null || world.getPlayerCount() > 0) {
+                emptySince.remove(name);
+                continue;
+            }
+            if (hibernating.containsKey(name)) continue;
+            long since = emptySince.computeIfAbsent(name, n -> now);
+            if (now - since >= (long) minutes * 60_000L) {
+                hibernate(myWorld, world);
+            }
+        }
+    }
+
+    private void hibernate(MyWorld myWorld, World world) {
+        emptySince.remove(world.getName());
+        hibernating.put(world.getName(), new State(world.getAllowMonsters(),
+                                                   world.getAllowAnimals(),
+                                                   world.getSimulationDistance(),
+                                                   world.getGameRuleValue(GameRules.ADVANCE_TIME),
+                                                   world.getGameRuleValue(GameRules.ADVANCE_WEATHER)));
+        save();
+        world.setSpawnFlags(false, false);
+        world.setSimulationDistance(MIN_SIMULATION_DISTANCE);
+        world.setGameRule(GameRules.ADVANCE_TIME, false);
+        world.setGameRule(GameRules.ADVANCE_WEATHER, false);
+        myWorld.applyKeepLoaded(world);
+        plugin.getLogger().info("[" + world.getName() + "] Hibernating");
+    }
+
+    /**
+     * Restore the settings of a hibernating world. Does nothing if
+     * the world is awake.
+     */
+    void wake(World world) {
+        emptySince.remove(world.getName());
+        State state = hibernating.remove(world.getName());
+        if (state == null) return;
+        save();
+        world.setSpawnFlags(state.allowMonsters, state.allowAnimals);
+        world.setSimulationDistance(state.simulationDistance);
+        if (state.advanceTime != null) world.setGameRule(GameRules.ADVANCE_TIME, state.advanceTime);
+        if (state.advanceWeather != null) world.setGameRule(GameRules.ADVANCE_WEATHER, state.advanceWeather);
+        MyWorld myWorld = plugin.worldOf(world);
+        if (myWorld != null) {
+            myWorld.applySettings(world);
+            myWorld.applyKeepLoaded(world);
+        }
+        plugin.getLogger().info("[" + world.getName() + "] Woke up");
+    }
+
+    private File getFile() {
+        return new File(plugin.getDataFolder(), "hibernate.yml");
+    }
+
+    /**
+     * Read the states of worlds which were still asleep when the
+     * server stopped. They are restored when the world is applied.
+     */
+    private void load() {
+        hibernating.clear();
+        YamlConfiguration yml = YamlConfiguration.loadConfiguration(getFile());
+        for (String key : yml.getKeys(false)) {
+            ConfigurationSection section = yml.getConfigurationSection(key);
+            if (section == null) continue;
+            hibernating.put(key, new State(section.getBoolean("AllowMonsters", true),
+                                           section.getBoolean("AllowAnimals", true),
+                                           section.getInt("SimulationDistance", 10),
+                                           section.isBoolean("AdvanceTime") ? section.getBoolean("AdvanceTime") : null,
+                                           section.isBoolean("AdvanceWeather") ? section.getBoolean("AdvanceWeather") : null));
+        }
+    }
+
+    private void save() {
+        File file = getFile();
+        if (hibernating.isEmpty()) {
+            file.delete();
+            return;
+        }
+        YamlConfiguration yml = new YamlConfiguration();
+        for (Map.Entry<String, State> entry : hibernating.entrySet()) {
+            ConfigurationSection section = yml.createSection(entry.getKey());
+            State state = entry.getValue();
+            section.set("AllowMonsters", state.allowMonsters);
+            section.set("AllowAnimals", state.allowAnimals);
+            section.set("SimulationDistance", state.simulationDistance);
+            section.set("AdvanceTime", state.advanceTime);
+            section.set("AdvanceWeather", state.advanceWeather);
+        }
+        try {
+            yml.save(file);
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.SEVERE, "Saving hibernate.yml", ioe);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.winthier.worlds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.Component.textOfChildren;
+import static net.kyori.adventure.text.event.ClickEvent.suggestCommand;
+import static net.kyori.adventure.text.event.HoverEvent.showText;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Find the chunks of a world with the most entities and tile
+ * entities. The list of loaded chunks is never fetched, since Bukkit
+ * builds it in one go. Instead, a fixed number of random chunk
+ * coordinates is visited per tick, within view distance of a player
+ * or the spawn, counting entities, tile entities and whether the
+ * chunk is entity ticking. Coordinates which are not loaded are
+ * skipped. The anchors are refreshed once per second. Counts and
+ * visits are summed up per chunk in primitive maps, and each chunk
+ * is reported with its average per visit.
+ *
+ * No task is scheduled while nothing is being sampled.
+ */
+@RequiredArgsConstructor
+final class HotspotSampler {
+    private static final int CHUNKS_PER_TICK = 64;
+    private static final int ROUND_TICKS = 20;
+    private static final int TOP = 10;
+    private final WorldsPlugin plugin;
+    private final Map<String, Session> sessions = new HashMap<>();
+    private BukkitTask task;
+    private int ticks;
+
+    @RequiredArgsConstructor
+    private static final class Session {
+        private final CommandSender sender;
+        private final String worldName;
+        private final int endTick;
+        private final LongLongMap entities = new LongLongMap();
+        private final LongLongMap tileEntities = new LongLongMap();
+        private final LongLongMap ticking = new LongLongMap();
+        private final LongLongMap visits = new LongLongMap();
+        private long[] anchors = new long[0];
+        private int radius;
+        private int nextRound;
+        private int rounds;
+        private long loadedTotal;
+        private long visitTotal;
+        private long tickingTotal;
+    }
+
+    /**
+     * Start sampling a world. The report is sent to the sender once
+     * the time is up.
+     * @return false if the world is already being sampled
+     */
+    boolean start(CommandSender sender, World world, int seconds) {
+        if (sessions.containsKey(world.getName())) return false;
+        sessions.put(world.getName(), new Session(sender, world.getName(), ticks + seconds * 20));
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+        return true;
+    }
+
+    void disable() {
+        sessions.clear();
+        stopTask();
+    }
+
+    private void stopTask() {
+        if (task == null) return;
+        task.cancel();
+        task = null;
+    }
+
+    private void tick() {
+        ticks += 1;
+        for (Iterator<Session> iter = sessions.values().iterator(); iter.hasNext();) {
+            Session session = iter.next();
+            World world = plugin.getServer().getWorld(session.worldName);
+            if (world == null) {
+                iter.remove();
+                session.sender.sendMessage(text("Hotspot sampling stopped: " + session.worldName + " was unloaded", RED));
+            } else if (ticks >= session.endTick) {
+                iter.remove();
+                report(session);
+            } else {
+                sample(session, world);
+            }
+        }
+        if (sessions.isEmpty()) stopTask();
+    }
+
+    private void sample(Session session, World world) {
+        if (ticks >= session.nextRound) {
+            List<Player> players = world.getPlayers();
+            session.anchors = new long[players.size() + 1];
+            session.anchors[0] = ChunkTickets.chunkKey(world.getSpawnLocation().getBlockX() >> 4,
+                                                       world.getSpawnLocation().getBlockZ() >> 4);
+            for (int i = 0; i < players.size(); i += 1) {
+                Chunk chunk = players.get(i).getChunk();
+                session.anchors[i + 1] = ChunkTickets.chunkKey(chunk.getX(), chunk.getZ());
+            }
+            session.radius = world.getViewDistance();
+            session.nextRound = ticks + ROUND_TICKS;
+            session.rounds += 1;
+            session.loadedTotal += world.getChunkCount();
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < CHUNKS_PER_TICK; i += 1) {
+            final long anchor = session.anchors[random.nextInt(session.anchors.length)];
+            final int x = ChunkTickets.chunkX(anchor) + random.nextInt(-session.radius, session.radius + 1);
+            final int z = ChunkTickets.chunkZ(anchor) + random.nextInt(-session.radius, session.radius + 1);
+            if (!world.isChunkLoaded(x, z)) continue;
+            final Chunk chunk = world.getChunkAt(x, z);
+            final long key = ChunkTickets.chunkKey(x, z);
+            session.visits.addTo(key, 1L);
+            session.visitTotal += 1L;
+            if (chunk.isEntitiesLoaded()) {
+                int count = chunk.getEntities().length;
+                if (count > 0) session.entities.addTo(key, count);
+            }
+            int tileCount = chunk.getTileEntities(false).length;
+            if (tileCount > 0) session.tileEntities.addTo(key, tileCount);
+            if (chunk.getLoadLevel() == Chunk.LoadLevel.ENTITY_TICKING) {
+                session.ticking.addTo(key, 1L);
+                session.tickingTotal += 1L;
+            }
+        }
+    }
+
+    private void report(Session session) {
+        final CommandSender sender = session.sender;
+        final int rounds = Math.max(1, session.rounds);
+        final long visitTotal = Math.max(1L, session.visitTotal);
+        sender.sendMessage(text("Hotspots in " + session.worldName + ": " + session.visitTotal + " chunk samples, "
+                                + "avg " + (session.loadedTotal / rounds) + " loaded chunks, "
+                                + (session.tickingTotal * 100L / visitTotal) + "% entity ticking", YELLOW));
+        // Rank by entities plus tile entities per visit, in
+        // thousandths, keeping only the top entries in the heap
+        PriorityQueue<long[]> top = new PriorityQueue<>((a, b) -> Long.compare(a[1], b[1]));
+        LongLongMap scores = new LongLongMap();
+        session.entities.forEach(scores::addTo);
+        session.tileEntities.forEach(scores::addTo);
+        scores.forEach((key, score) -> {
+                top.add(new long[] {key, score * 1000L / session.visits.get(key)});
+                if (top.size() > TOP) top.poll();
+            });
+        if (top.isEmpty()) {
+            sender.sendMessage(text("No entities found", GRAY));
+            return;
+        }
+        List<long[]> sorted = new ArrayList<>(top);
+        sorted.sort((a, b) -> Long.compare(b[1], a[1]));
+        World world = plugin.getServer().getWorld(session.worldName);
+        final String dimension = world != null ? world.getKey().asString() : session.worldName;
+        for (long[] entry : sorted) {
+            final long key = entry[0];
+            final long visits = session.visits.get(key);
+            final int x = (ChunkTickets.chunkX(key) << 4) + 8;
+            final int z = (ChunkTickets.chunkZ(key) << 4) + 8;
+            final String command = "/execute in " + dimension + " run tp @s " + x + " ~ " + z;
+            sender.sendMessage(textOfChildren(text(" " + x + ", " + z, AQUA),
+                                              text(String.format(" entities %.1f", (double) session.entities.get(key) / visits), WHITE),
+                                              text(String.format(" tiles %.1f", (double) session.tileEntities.get(key) / visits), WHITE),
+                                              text(" ticking " + (session.ticking.get(key) * 100L / visits) + "%", GRAY))
+                               .hoverEvent(showText(text(command, GRAY)))
+                               .clickEvent(suggestCommand(command)));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.winthier.worlds;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Detect unloaded worlds which are never garbage collected, because
+ * some plugin still holds on to the world, its chunks or entities.
+ * Each unloaded world is tracked via a weak reference. Once the
+ * world was unloaded for a while and the garbage collector ran
+ * enough times, it is considered leaked and a warning is logged.
+ *
+ * The check runs every few seconds while there are unloaded worlds
+ * which were not collected yet, and not at all otherwise.
+ */
+@RequiredArgsConstructor
+final class LeakDetector {
+    private static final long CHECK_INTERVAL = 20L * 10L;
+    private final WorldsPlugin plugin;
+    private final ReferenceQueue<World> queue = new ReferenceQueue<>();
+    private final List<Unloaded> unloaded = new ArrayList<>();
+    private BukkitTask task;
+
+    static final class Unloaded extends WeakReference<World> {
+        private final String name;
+        private final UUID uid;
+        private final long unloadTime;
+        private final long gcCount;
+        private boolean suspect;
+        private boolean collected;
+
+        Unloaded(final World world, final ReferenceQueue<World> queue, final long gcCount) {
+            super(world, queue);
+            this.name = world.getName();
+            this.uid = world.getUID();
+            this.unloadTime = System.currentTimeMillis();
+            this.gcCount = gcCount;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isSuspect() {
+            return suspect;
+        }
+
+        long getMinutes() {
+            return (System.currentTimeMillis() - unloadTime) / 60_000L;
+        }
+    }
+
+    /**
+     * Start tracking a world which is about to be unloaded.
+     */
+    void track(World world) {
+        if (!plugin.getConfig().getBoolean("leaks.Enabled", true)) return;
+        unloaded.add(new Unloaded(world, queue, gcCount()));
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::check, CHECK_INTERVAL, CHECK_INTERVAL);
+        }
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        unloaded.clear();
+    }
+
+    /**
+     * Get the unloaded worlds which were not collected yet, oldest
+     * first.
+     */
+    List<Unloaded> getUnloaded() {
+        check();
+        return List.copyOf(unloaded);
+    }
+
+    private void check() {
+        for (Reference<? extends World> ref = queue.poll(); ref != null; ref = queue.poll()) {
+            ((Unloaded) ref).collected = true;
+        }
+        final int minCycles = plugin.getConfig().getInt("leaks.GcCycles", 20);
+        final long minMinutes = plugin.getConfig().getLong("leaks.Minutes", 5L);
+        final long gcCount = gcCount();
+        for (Iterator<Unloaded> iter = unloaded.iterator(); iter.hasNext();) {
+            Unloaded it = iter.next();
+            World world = it.get();
+            if (it.collected || world == null) {
+                if (it.suspect) {
+                    plugin.getLogger().info("[" + it.name + "] Unloaded world was finally collected after "
+                                            + it.getMinutes() + " minutes");
+                }
+                iter.remove();
+                continue;
+            }
+            if (plugin.getServer().getWorld(it.uid) == world) {
+                // The unload was cancelled or failed
+                it.clear();
+                iter.remove();
+                continue;
+            }
+            if (it.suspect) continue;
+            if (gcCount - it.gcCount < minCycles || it.getMinutes() < minMinutes) continue;
+            it.suspect = true;
+            plugin.getLogger().warning("[" + it.name + "] Unloaded world was not garbage collected "
+                                       + it.getMinutes() + " minutes after unload."
+                                       + " Some plugin may still hold a reference to it.");
+        }
+        if (unloaded.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static long gcCount() {
+        long result = 0L;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0L, bean.getCollectionCount());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.winthier.worlds;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import lombok.Value;
+
+/**
+ * A weekly time range during which a world should be loaded. The
+ * format is an optional list of days followed by a time range, for
+ * example "18:00-23:00", "SAT,SUN 10:00-22:00" or "FRI-SUN 20:00-02:00".
+ * Ranges which end before they start continue past midnight.
+ */
+@Value
+public final class LoadWindow {
+    private String spec;
+    private Set<DayOfWeek> days;
+    private LocalTime start;
+    private LocalTime end;
+
+    public static LoadWindow parse(String spec) {
+        String[] toks = spec.trim().split("\\s+");
+        if (toks.length < 1 || toks.length > 2) {
+            throw new IllegalArgumentException("Invalid load window: " + spec);
+        }
+        Set<DayOfWeek> days = toks.length == 2
+            ? parseDays(toks[0])
+            : EnumSet.allOf(DayOfWeek.class);
+        String[] times = toks[toks.length - 1].split("-");
+        if (times.length != 2) {
+            throw new IllegalArgumentException("Invalid time range: " + spec);
+        }
+        try {
+            return new LoadWindow(spec, days, LocalTime.parse(times[0]), LocalTime.parse(times[1]));
+        } catch (DateTimeParseException dtpe) {
+            throw new IllegalArgumentException("Invalid time: " + spec, dtpe);
+        }
+    }
+
+    private static Set<DayOfWeek> parseDays(String arg) {
+        Set<DayOfWeek> result = EnumSet.noneOf(DayOfWeek.class);
+        for (String it : arg.split(",")) {
+            String[] range = it.split("-");
+            if (range.length == 1) {
+                result.add(parseDay(range[0]));
+            } else if (range.length == 2) {
+                DayOfWeek day = parseDay(range[0]);
+                DayOfWeek last = parseDay(range[1]);
+                result.add(day);
+                while (day != last) {
+                    day = day.plus(1);
+                    result.add(day);
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid days: " + arg);
+            }
+        }
+        return result;
+    }
+
+    private static DayOfWeek parseDay(String arg) {
+        String upper = arg.toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().startsWith(upper) && upper.length() >= 2) return day;
+        }
+        throw new IllegalArgumentException("Invalid day: " + arg);
+    }
+
+    public boolean contains(LocalDateTime time) {
+        DayOfWeek day = time.getDayOfWeek();
+        LocalTime localTime = time.toLocalTime();
+        if (!start.isAfter(end)) {
+            return days.contains(day) && !localTime.isBefore(start) && localTime.isBefore(end);
+        }
+        return (days.contains(day) && !localTime.isBefore(start))
+            || (days.contains(day.minus(1)) && localTime.isBefore(end));
+    }
+}
@@ -0,0 +1,161 @@
+package com.winthier.worlds;
+
+/**
+ * Open addressing hash map from long to long without boxing. Missing
+ * keys read as 0.
+ */
+final class LongLongMap {
+    private static final int MIN_CAPACITY = 16;
+    private long[] keys = new long[MIN_CAPACITY];
+    private long[] values = new long[MIN_CAPACITY];
+    private int size;
+    // Key 0 marks free slots and is stored separately
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    boolean containsKey(long key) {
+        if (key == 0L) return hasZeroKey;
+        return find(key) >= 0;
+    }
+
+    long get(long key) {
+        if (key == 0L) return hasZeroKey ? zeroValue : 0L;
+        int pos = find(key);
+        return pos >= 0 ? values[pos] : 0L;
+    }
+
+    void put(long key, long value) {
+        if (key == 0L) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int pos = find(key);
+        if (pos >= 0) {
+            values[pos] = value;
+            return;
+        }
+        insert(key, value);
+    }
+
+    /**
+     * Remove a key.
+     * @return the previous value, or 0
+     */
+    long remove(long key) {
+        if (key == 0L) {
+            long result = hasZeroKey ? zeroValue : 0L;
+            hasZeroKey = false;
+            zeroValue = 0L;
+            return result;
+        }
+        int pos = find(key);
+        if (pos < 0) return 0L;
+        long result = values[pos];
+        removeAt(pos);
+        return result;
+    }
+
+    /**
+     * Add to the value of a key. The key is removed once its value
+     * reaches 0.
+     * @return the new value
+     */
+    long addTo(long key, long delta) {
+        long value = get(key) + delta;
+        if (value == 0L) {
+            remove(key);
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    interface Visitor {
+        void visit(long key, long value);
+    }
+
+    void forEach(Visitor visitor) {
+        if (hasZeroKey) visitor.visit(0L, zeroValue);
+        for (int i = 0; i < keys.length; i += 1) {
+            if (keys[i] != 0L) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new long[MIN_CAPACITY];
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0L;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private int find(long key) {
+        final int mask = keys.length - 1;
+        int pos = index(key);
+        while (keys[pos] != 0L) {
+            if (keys[pos] == key) return pos;
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, long value) {
+        if ((size + 1) * 4 > keys.length * 3) resize(keys.length * 2);
+        final int mask = keys.length - 1;
+        int pos = index(key);
+        while (keys[pos] != 0L) {
+            pos = (pos + 1) & mask;
+        }
+        keys[pos] = key;
+        values[pos] = value;
+        size += 1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i += 1) {
+            if (oldKeys[i] != 0L) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    /**
+     * Remove the entry at pos and shift subsequent entries of the
+     * same probe sequence back, so that lookups never hit a gap.
+     */
+    private void removeAt(int pos) {
+        final int mask = keys.length - 1;
+        size -= 1;
+        while (true) {
+            final int last = pos;
+            pos = (pos + 1) & mask;
+            long key;
+            while (true) {
+                key = keys[pos];
+                if (key == 0L) {
+                    keys[last] = 0L;
+                    values[last] = 0L;
+                    return;
+                }
+                int slot = index(key);
+                if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) break;
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = key;
+            values[last] = values[pos];
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.winthier.worlds;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.Value;
 import net.kyori.adventure.util.TriState;
 import org.bukkit.Difficulty;
@@ -20,6 +29,7 @@ import org.bukkit.WorldBorder;
 import org.bukkit.WorldCreator;
 import org.bukkit.WorldType;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.SpawnCategory;
 import org.bukkit.util.NumberConversions;
 
@@ -48,20 +58,35 @@ public final class MyWorld {
     private Border border = null;
     private GameMode gameMode = null;
     private Long fullTime;
+    private String inherit;
+    private Profile profile;
+    private Map<String, ChunkArea> keepLoaded = null;
+    private List<LoadWindow> loadWindows = null;
+    private EntityLimits entityLimits = null;
     private boolean didConvert;
+    // Settings merged with the profile, updated with either
+    @Setter(AccessLevel.NONE)
+    private Settings effectiveSettings = null;
 
-    public void configure(ConfigurationSection config) {
+    /**
+     * Read the configuration of this world. Invalid values are
+     * skipped and reported to the errors list, so that a reload can
+     * be refused.
+     */
+    public void configure(ConfigurationSection config, List<String> errors) {
+        final List<String> problems = new ArrayList<>();
         autoLoad = config.getBoolean("AutoLoad", false);
+        inherit = config.getString("Inherit");
         // World Creator
         try {
             worldType = WorldType.valueOf(config.getString("Type", "NORMAL"));
         } catch (IllegalArgumentException iae) {
-            iae.printStackTrace();
+            problems.add("Invalid Type: " + config.getString("Type"));
         }
         try {
             environment = World.Environment.valueOf(config.getString("Environment", "NORMAL"));
         } catch (IllegalArgumentException iae) {
-            iae.printStackTrace();
+            problems.add("Invalid Environment: " + config.getString("Environment"));
         }
         generator = config.getString("Generator");
         generatorSettings = config.getString("GeneratorSettings");
@@ -94,7 +119,7 @@ public final class MyWorld {
                 } else if (type == Boolean.class) {
                     Boolean boolValue = toBoolean(section.get(key), null);
                     if (boolValue == null) {
-                        plugin.getLogger().severe("[" + name + "] Invalid boolean gamerule: " + gameRule.getKey() + " = " + section.get(key));
+                        problems.add("Invalid boolean GameRule: " + key + " = " + section.get(key));
                     } else {
                         gameRules.put(gameRule, boolValue);
                     }
@@ -103,8 +128,9 @@ public final class MyWorld {
         }
         section = config.getConfigurationSection("Settings");
         if (section != null) {
-            settings = new Settings();
-            settings.configure(section);
+            Settings newSettings = new Settings();
+            newSettings.configure(section, problems);
+            setSettings(newSettings);
         }
         section = config.getConfigurationSection("SpawnLocation");
         if (section != null) {
@@ -122,18 +148,48 @@ public final class MyWorld {
             try {
                 this.gameMode = GameMode.valueOf(gameModeString.toUpperCase());
             } catch (IllegalArgumentException iae) {
-                plugin.getLogger().warning("Unknown GameMode setting for " + name + ": " + gameModeString);
+                problems.add("Invalid GameMode: " + gameModeString);
                 this.gameMode = null;
             }
         }
         if (config.isLong("FullTime") || config.isInt("FullTime")) {
             fullTime = config.getLong("FullTime");
         }
+        section = config.getConfigurationSection("KeepLoaded");
+        if (section != null) {
+            keepLoaded = new LinkedHashMap<>();
+            for (String key : section.getKeys(false)) {
+                ChunkArea area = ChunkArea.of(section.getIntegerList(key));
+                if (area == null) {
+                    problems.add("Invalid KeepLoaded area: " + key + " = " + section.get(key));
+                    continue;
+                }
+                keepLoaded.put(key, area);
+            }
+        }
+        section = config.getConfigurationSection("EntityLimits");
+        if (section != null) {
+            entityLimits = new EntityLimits();
+            entityLimits.configure(section, problems);
+        }
+        if (config.isList("LoadWindows")) {
+            loadWindows = new ArrayList<>();
+            for (String spec : config.getStringList("LoadWindows")) {
+                try {
+                    loadWindows.add(LoadWindow.parse(spec));
+                } catch (IllegalArgumentException iae) {
+                    problems.add(iae.getMessage());
+                }
+            }
+        }
+        for (String problem : problems) {
+            errors.add("[" + name + "] " + problem);
+        }
     }
 
     private void convertLegacyGameRule(String key, String value) {
         GameRule gameRule = null;
-        if (key.equals("doFireTick") && value.equals("false")) {
+        if (key.equals("doFireTick") && "false".equals(value)) {
             gameRule = GameRules.FIRE_SPREAD_RADIUS_AROUND_PLAYER;
             value = "0";
             plugin.getLogger().info("[" + name + "] GameRule updated: " + gameRule + " = " + value);
@@ -179,10 +235,15 @@ public final class MyWorld {
      * This function only saves some of the settings. In general,
      * it is intended for admins to edit the config.yml, then use
      * reload to apply the changes.
+     * The config.yml or world file is written right away.
      */
     public void save() {
-        ConfigurationSection config = plugin.getConfig().getConfigurationSection("worlds").createSection(name);
+        plugin.getWorldFiles().save(this);
+    }
+
+    protected void save(ConfigurationSection config) {
         config.set("AutoLoad", autoLoad);
+        config.set("Inherit", inherit);
         if (worldType != null) {
             config.set("Type", worldType.name());
         }
@@ -216,29 +277,101 @@ public final class MyWorld {
         }
         if (gameMode != null) config.set("GameMode", gameMode.name());
         if (fullTime != null) config.set("FullTime", fullTime);
+        if (keepLoaded != null) {
+            ConfigurationSection section = config.createSection("KeepLoaded");
+            for (Map.Entry<String, ChunkArea> entry : keepLoaded.entrySet()) {
+                section.set(entry.getKey(), entry.getValue().toList());
+            }
+        }
+        if (entityLimits != null) {
+            entityLimits.save(config.createSection("EntityLimits"));
+        }
+        if (loadWindows != null) {
+            List<String> specs = new ArrayList<>();
+            for (LoadWindow loadWindow : loadWindows) {
+                specs.add(loadWindow.getSpec());
+            }
+            config.set("LoadWindows", specs);
+        }
     }
 
     public void configure(World world) {
+        // Import the configured values, not the frozen ones
+        plugin.getHibernator().wake(world);
         // WorldType removed because Bukkit says it's @Deprecated
         environment = world.getEnvironment();
         // Generator name has no getter...
         seed = world.getSeed();
+        // Only keep game rules which deviate from the default
         if (gameRules == null) gameRules = new HashMap<>();
         for (GameRule<?> gameRule : GameRule.values()) {
             final Object value;
+            final boolean inherited;
             try {
                 value = world.getGameRuleValue(gameRule);
+                inherited = value == null || isInheritedGameRule(world, gameRule, value);
             } catch (IllegalArgumentException iae) {
                 plugin.getLogger().log(Level.SEVERE, "[" + name + "] gameRule=" + gameRule, iae);
                 continue;
             }
-            gameRules.put(gameRule, value);
+            if (inherited) {
+                gameRules.remove(gameRule);
+            } else {
+                gameRules.put(gameRule, value);
+            }
+        }
+        if (gameRules.isEmpty()) gameRules = null;
+        // Settings and border are only stored where they deviate
+        // from the profile
+        Settings newSettings = new Settings();
+        newSettings.configure(world);
+        if (profile != null && profile.getSettings() != null) {
+            newSettings = Settings.diff(newSettings, profile.getSettings());
         }
-        settings = new Settings();
-        settings.configure(world);
+        setSettings(newSettings.isEmpty() ? null : newSettings);
         spawnLocation = MyLocation.of(getSpawnLocation());
         border = new Border();
         border.configure(world);
+        if (profile != null && border.equals(profile.getBorder())) {
+            border = null;
+        }
+    }
+
+    /**
+     * Remove all game rules which are set to the same value as
+     * their default, or as the profile if it has one.
+     * @param world any world to get the defaults from
+     * @return the number of removed game rules
+     */
+    public int compactGameRules(World world) {
+        if (gameRules == null) return 0;
+        int count = 0;
+        for (Iterator<Map.Entry<GameRule<?>, Object>> iter = gameRules.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<GameRule<?>, Object> entry = iter.next();
+            try {
+                if (!isInheritedGameRule(world, entry.getKey(), entry.getValue())) continue;
+            } catch (IllegalArgumentException iae) {
+                plugin.getLogger().log(Level.SEVERE, "[" + name + "] gameRule=" + entry.getKey(), iae);
+                continue;
+            }
+            iter.remove();
+            count += 1;
+        }
+        if (gameRules.isEmpty()) gameRules = null;
+        return count;
+    }
+
+    private boolean isInheritedGameRule(World world, GameRule<?> gameRule, Object value) {
+        Object inherited = profile != null && profile.getGameRules().containsKey(gameRule)
+            ? profile.getGameRules().get(gameRule)
+            : world.getGameRuleDefault(gameRule);
+        if (inherited == null) return false;
+        if (gameRule.getType() == Integer.class) {
+            return NumberConversions.toInt(inherited) == NumberConversions.toInt(value);
+        } else if (gameRule.getType() == Boolean.class) {
+            return Objects.equals(toBoolean(inherited, null), toBoolean(value, null));
+        }
+        return inherited.equals(value);
     }
 
     protected WorldCreator getWorldCreator() {
@@ -254,8 +387,8 @@ public final class MyWorld {
         if (seed != null) {
             creator.seed(seed);
         }
-        if (settings != null) {
-            creator.keepSpawnLoaded(TriState.byBoolean(settings.keepSpawnInMemory));
+        if (effectiveSettings != null) {
+            creator.keepSpawnLoaded(TriState.byBoolean(effectiveSettings.keepSpawnInMemory));
         }
         return creator;
     }
@@ -264,12 +397,25 @@ public final class MyWorld {
         return plugin.getServer().getWorld(name);
     }
 
+    /**
+     * Load the world right away, unless it is already loaded, and
+     * apply the settings. Creating a world is synchronous and blocks
+     * the calling tick. Prefer WorldsPlugin#loadWorld, which spreads
+     * loads over ticks.
+     */
     public World loadWorld() {
         World world = getWorld();
         if (world == null) {
+            if (plugin.getRegionRecompressor().isRunning(name)) {
+                plugin.getLogger().warning("[" + name + "] Cannot load while region files are being recompressed");
+                return null;
+            }
+            final long start = System.nanoTime();
             WorldCreator creator = getWorldCreator();
             world = creator.createWorld();
             if (world != null) apply(world);
+            plugin.getWorldMonitor().recordLoad(name, System.nanoTime() - start);
+            if (world != null) new WorldReadyEvent(this, world).callEvent();
         }
         return world;
     }
@@ -285,34 +431,128 @@ public final class MyWorld {
     }
 
     public void apply(World world) {
+        final long start = System.nanoTime();
+        plugin.getHibernator().wake(world);
+        applySettings(world);
+        if (spawnLocation != null) spawnLocation.setSpawn(world);
+        plugin.getSafeSpawns().update(world, spawnLocation != null
+                                      ? spawnLocation.getLocation(world)
+                                      : world.getSpawnLocation());
+        Border effectiveBorder = getEffectiveBorder();
+        if (effectiveBorder != null) effectiveBorder.apply(world);
+        if (fullTime != null) world.setFullTime(fullTime);
+        plugin.getEntityLimiter().configure(world, entityLimits);
+        applyKeepLoaded(world);
+        plugin.getWorldMonitor().recordApply(name, System.nanoTime() - start);
+        new WorldAppliedEvent(this, world).callEvent();
+    }
+
+    /**
+     * Apply the game rules and settings of this world and its
+     * profile.
+     */
+    void applySettings(World world) {
+        if (profile != null) {
+            for (Map.Entry<GameRule<?>, Object> entry : profile.getGameRules().entrySet()) {
+                if (gameRules != null && gameRules.containsKey(entry.getKey())) continue;
+                applyGameRule(world, entry.getKey(), entry.getValue());
+            }
+        }
         if (gameRules != null) {
             for (Map.Entry<GameRule<?>, Object> entry : gameRules.entrySet()) {
-                Class<?> type = entry.getKey().getType();
-                if (type == Integer.class) {
-                    @SuppressWarnings("unchecked")
-                    GameRule<Integer> gameRule = (GameRule<Integer>) entry.getKey();
-                    int value = NumberConversions.toInt(entry.getValue());
-                    try {
-                        world.setGameRule(gameRule, value);
-                    } catch (IllegalArgumentException iae) {
-                        plugin.getLogger().log(Level.SEVERE, "[" + name + "] " + gameRule.getKey() + " = " + value, iae);
-                    }
-                } else if (type == Boolean.class) {
-                    @SuppressWarnings("unchecked")
-                    GameRule<Boolean> gameRule = (GameRule<Boolean>) entry.getKey();
-                    Boolean value = toBoolean(entry.getValue(), world.getGameRuleDefault(gameRule));
-                    if (value == null) {
-                        plugin.getLogger().severe("[" + name + "] Invalid boolean gamerule: " + gameRule.getKey() + " = " + entry.getValue());
-                    } else {
-                        world.setGameRule(gameRule, value);
-                    }
-                }
+                applyGameRule(world, entry.getKey(), entry.getValue());
             }
         }
-        if (settings != null) settings.apply(world);
-        if (spawnLocation != null) spawnLocation.setSpawn(world);
-        if (border != null) border.apply(world);
-        if (fullTime != null) world.setFullTime(fullTime);
+        if (effectiveSettings != null) effectiveSettings.apply(world);
+    }
+
+    private void applyGameRule(World world, GameRule<?> rule, Object rawValue) {
+        Class<?> type = rule.getType();
+        if (type == Integer.class) {
+            @SuppressWarnings("unchecked")
+            GameRule<Integer> gameRule = (GameRule<Integer>) rule;
+            int value = NumberConversions.toInt(rawValue);
+            try {
+                world.setGameRule(gameRule, value);
+            } catch (IllegalArgumentException iae) {
+                plugin.getLogger().log(Level.SEVERE, "[" + name + "] " + gameRule.getKey() + " = " + value, iae);
+            }
+        } else if (type == Boolean.class) {
+            @SuppressWarnings("unchecked")
+            GameRule<Boolean> gameRule = (GameRule<Boolean>) rule;
+            Boolean value = toBoolean(rawValue, world.getGameRuleDefault(gameRule));
+            if (value == null) {
+                plugin.getLogger().severe("[" + name + "] Invalid boolean gamerule: " + gameRule.getKey() + " = " + rawValue);
+            } else {
+                world.setGameRule(gameRule, value);
+            }
+        }
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+        updateEffectiveSettings();
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+        updateEffectiveSettings();
+    }
+
+    /**
+     * Merge the settings of this world with those of its profile
+     * once, whenever either changes, rather than on every use.
+     */
+    private void updateEffectiveSettings() {
+        Settings inherited = profile != null ? profile.getSettings() : null;
+        if (inherited == null) {
+            effectiveSettings = settings;
+        } else {
+            effectiveSettings = Settings.merge(inherited, settings != null ? settings : new Settings());
+        }
+    }
+
+    public Border getEffectiveBorder() {
+        if (border != null || profile == null) return border;
+        return profile.getBorder();
+    }
+
+    public GameMode getEffectiveGameMode() {
+        if (gameMode != null || profile == null) return gameMode;
+        return profile.getGameMode();
+    }
+
+    /**
+     * Pin the chunks of all KeepLoaded areas, plus the spawn chunks
+     * while the Prewarmer keeps the world warm and it does not
+     * hibernate, and release the ones which are no longer wanted.
+     * This is cheap enough to be called on every reload.
+     */
+    public void applyKeepLoaded(World world) {
+        Set<Long> chunks = new HashSet<>();
+        if (keepLoaded != null) {
+            for (ChunkArea area : keepLoaded.values()) {
+                area.addChunkKeys(chunks);
+            }
+        }
+        if (plugin.getPrewarmer().isWarm(name) && !plugin.getHibernator().isHibernating(name)) {
+            Location spawn = spawnLocation != null
+                ? spawnLocation.getLocation(world)
+                : world.getSpawnLocation();
+            int radius = plugin.getPrewarmer().getWarmRadius();
+            int cx = spawn.getBlockX() >> 4;
+            int cz = spawn.getBlockZ() >> 4;
+            new ChunkArea(cx - radius, cz - radius, cx + radius, cz + radius).addChunkKeys(chunks);
+        }
+        plugin.getChunkTickets().reconcile(world, chunks);
+    }
+
+    public boolean isInLoadWindow(LocalDateTime time) {
+        if (loadWindows == null) return false;
+        for (LoadWindow loadWindow : loadWindows) {
+            if (loadWindow.contains(time)) return true;
+        }
+        return false;
     }
 
     public Location getSpawnLocation() {
@@ -324,13 +564,25 @@ public final class MyWorld {
         return result;
     }
 
+    /**
+     * Get the spawn location, moved to the nearest safe spot if
+     * necessary. This only consults the cache of SafeSpawns and
+     * never probes blocks.
+     */
+    public Location getSafeSpawnLocation() {
+        Location result = getSpawnLocation();
+        if (result == null) return null;
+        return plugin.getSafeSpawns().get(result.getWorld(), result);
+    }
+
     public void setSpawnLocation(Location location) {
         spawnLocation = MyLocation.of(location);
         spawnLocation.setSpawn(location.getWorld());
+        plugin.getSafeSpawns().update(location.getWorld(), location);
     }
 
     @Data
-    public final class Settings {
+    public static final class Settings {
         //   General
         private Boolean autoSave;
         private Difficulty difficulty;
@@ -338,6 +590,7 @@ public final class MyWorld {
         private Boolean pvp;
         private Integer viewDistance;
         private Integer simulationDistance;
+        private Integer hibernate;
         //   Mob Spawning
         //     Allow
         private Boolean allowMonsters;
@@ -345,7 +598,64 @@ public final class MyWorld {
         private final Map<SpawnCategory, Integer> spawnLimits = new EnumMap<>(SpawnCategory.class);
         private final Map<SpawnCategory, Integer> ticksPerSpawns = new EnumMap<>(SpawnCategory.class);
 
-        protected void configure(ConfigurationSection config) {
+        /**
+         * Create new settings with the values of child where they
+         * are set, and those of parent otherwise.
+         */
+        protected static Settings merge(Settings parent, Settings child) {
+            Settings result = new Settings();
+            result.autoSave = child.autoSave != null ? child.autoSave : parent.autoSave;
+            result.difficulty = child.difficulty != null ? child.difficulty : parent.difficulty;
+            result.keepSpawnInMemory = child.keepSpawnInMemory != null ? child.keepSpawnInMemory : parent.keepSpawnInMemory;
+            result.pvp = child.pvp != null ? child.pvp : parent.pvp;
+            result.viewDistance = child.viewDistance != null ? child.viewDistance : parent.viewDistance;
+            result.simulationDistance = child.simulationDistance != null ? child.simulationDistance : parent.simulationDistance;
+            result.hibernate = child.hibernate != null ? child.hibernate : parent.hibernate;
+            result.allowMonsters = child.allowMonsters != null ? child.allowMonsters : parent.allowMonsters;
+            result.allowAnimals = child.allowAnimals != null ? child.allowAnimals : parent.allowAnimals;
+            result.spawnLimits.putAll(parent.spawnLimits);
+            result.spawnLimits.putAll(child.spawnLimits);
+            result.ticksPerSpawns.putAll(parent.ticksPerSpawns);
+            result.ticksPerSpawns.putAll(child.ticksPerSpawns);
+            return result;
+        }
+
+        /**
+         * Create new settings with only the values of child which
+         * differ from those of parent.
+         */
+        protected static Settings diff(Settings child, Settings parent) {
+            Settings result = new Settings();
+            result.autoSave = Objects.equals(child.autoSave, parent.autoSave) ? null : child.autoSave;
+            result.difficulty = child.difficulty == parent.difficulty ? null : child.difficulty;
+            result.keepSpawnInMemory = Objects.equals(child.keepSpawnInMemory, parent.keepSpawnInMemory) ? null : child.keepSpawnInMemory;
+            result.pvp = Objects.equals(child.pvp, parent.pvp) ? null : child.pvp;
+            result.viewDistance = Objects.equals(child.viewDistance, parent.viewDistance) ? null : child.viewDistance;
+            result.simulationDistance = Objects.equals(child.simulationDistance, parent.simulationDistance) ? null : child.simulationDistance;
+            result.hibernate = Objects.equals(child.hibernate, parent.hibernate) ? null : child.hibernate;
+            result.allowMonsters = Objects.equals(child.allowMonsters, parent.allowMonsters) ? null : child.allowMonsters;
+            result.allowAnimals = Objects.equals(child.allowAnimals, parent.allowAnimals) ? null : child.allowAnimals;
+            for (Map.Entry<SpawnCategory, Integer> entry : child.spawnLimits.entrySet()) {
+                if (!entry.getValue().equals(parent.spawnLimits.get(entry.getKey()))) {
+                    result.spawnLimits.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<SpawnCategory, Integer> entry : child.ticksPerSpawns.entrySet()) {
+                if (!entry.getValue().equals(parent.ticksPerSpawns.get(entry.getKey()))) {
+                    result.ticksPerSpawns.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return result;
+        }
+
+        public boolean isEmpty() {
+            return autoSave == null && difficulty == null && keepSpawnInMemory == null && pvp == null
+                && viewDistance == null && simulationDistance == null && hibernate == null
+                && allowMonsters == null && allowAnimals == null
+                && spawnLimits.isEmpty() && ticksPerSpawns.isEmpty();
+        }
+
+        protected void configure(ConfigurationSection config, List<String> errors) {
             if (config.isSet("AutoSave")) {
                 autoSave = config.getBoolean("AutoSave");
             }
@@ -353,7 +663,7 @@ public final class MyWorld {
                 try {
                     difficulty = Difficulty.valueOf(config.getString("Difficulty"));
                 } catch (IllegalArgumentException iae) {
-                    iae.printStackTrace();
+                    errors.add("Invalid Difficulty: " + config.getString("Difficulty"));
                 }
             }
             if (config.isSet("KeepSpawnInMemory")) {
@@ -368,6 +678,9 @@ public final class MyWorld {
             if (config.isSet("SimulationDistance")) {
                 simulationDistance = config.getInt("SimulationDistance");
             }
+            if (config.isSet("Hibernate")) {
+                hibernate = config.getInt("Hibernate");
+            }
             ConfigurationSection section = config.getConfigurationSection("AllowSpawns");
             if (section != null) {
                 if (section.isSet("Monster")) {
@@ -404,6 +717,7 @@ public final class MyWorld {
             config.set("PvP", pvp);
             config.set("ViewDistance", viewDistance);
             config.set("SimulationDistance", simulationDistance);
+            config.set("Hibernate", hibernate);
             config.set("AllowSpawns.Monster", allowMonsters);
             config.set("AllowSpawns.Animal", allowAnimals);
             for (SpawnCategory spawnCategory : SpawnCategory.values()) {
@@ -448,6 +762,55 @@ public final class MyWorld {
         }
     }
 
+    /**
+     * Caps on the number of living entities per chunk: in total, per
+     * spawn category, and per entity type.
+     */
+    @Data
+    public static final class EntityLimits {
+        private Integer perChunk;
+        private final Map<SpawnCategory, Integer> spawnCategories = new EnumMap<>(SpawnCategory.class);
+        private final Map<EntityType, Integer> types = new EnumMap<>(EntityType.class);
+
+        public boolean isEmpty() {
+            return perChunk == null && spawnCategories.isEmpty() && types.isEmpty();
+        }
+
+        protected void configure(ConfigurationSection config, List<String> errors) {
+            if (config.isSet("PerChunk")) {
+                perChunk = config.getInt("PerChunk");
+            }
+            ConfigurationSection section = config.getConfigurationSection("SpawnCategories");
+            if (section != null) {
+                for (SpawnCategory spawnCategory : SpawnCategory.values()) {
+                    if (section.isSet(spawnCategory.name())) {
+                        spawnCategories.put(spawnCategory, section.getInt(spawnCategory.name()));
+                    }
+                }
+            }
+            section = config.getConfigurationSection("Types");
+            if (section != null) {
+                for (String key : section.getKeys(false)) {
+                    try {
+                        types.put(EntityType.valueOf(key.toUpperCase()), section.getInt(key));
+                    } catch (IllegalArgumentException iae) {
+                        errors.add("Invalid entity type in EntityLimits: " + key);
+                    }
+                }
+            }
+        }
+
+        protected void save(ConfigurationSection config) {
+            config.set("PerChunk", perChunk);
+            for (Map.Entry<SpawnCategory, Integer> entry : spawnCategories.entrySet()) {
+                config.set("SpawnCategories." + entry.getKey().name(), entry.getValue());
+            }
+            for (Map.Entry<EntityType, Integer> entry : types.entrySet()) {
+                config.set("Types." + entry.getKey().name(), entry.getValue());
+            }
+        }
+    }
+
     @Value
     public static final class MyLocation {
         private double x;
@@ -518,6 +881,18 @@ public final class MyWorld {
             config.set("WarningTime", warningTime);
         }
 
+        protected Border copy() {
+            Border result = new Border();
+            result.centerX = centerX;
+            result.centerZ = centerZ;
+            result.size = size;
+            result.damageAmount = damageAmount;
+            result.damageBuffer = damageBuffer;
+            result.warningDistance = warningDistance;
+            result.warningTime = warningTime;
+            return result;
+        }
+
         protected void configure(World world) {
             WorldBorder worldBorder = world.getWorldBorder();
             Location loc = worldBorder.getCenter();
@@ -539,4 +914,35 @@ public final class MyWorld {
             worldBorder.setWarningTime(warningTime);
         }
     }
+
+    /**
+     * A rectangle of chunks, inclusive.
+     */
+    @Value
+    public static final class ChunkArea {
+        private int minX;
+        private int minZ;
+        private int maxX;
+        private int maxZ;
+
+        protected static ChunkArea of(List<Integer> list) {
+            if (list.size() != 4) return null;
+            return new ChunkArea(Math.min(list.get(0), list.get(2)),
+                                 Math.min(list.get(1), list.get(3)),
+                                 Math.max(list.get(0), list.get(2)),
+                                 Math.max(list.get(1), list.get(3)));
+        }
+
+        protected List<Integer> toList() {
+            return Arrays.asList(minX, minZ, maxX, maxZ);
+        }
+
+        protected void addChunkKeys(Set<Long> chunks) {
+            for (int z = minZ; z <= maxZ; z += 1) {
+                for (int x = minX; x <= maxX; x += 1) {
+                    chunks.add(ChunkTickets.chunkKey(x, z));
+                }
+            }
+        }
+    }
 }
@@ -15,20 +15,24 @@ final class PlayerListener implements Listener {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
         final Player player = event.getPlayer();
+        plugin.getHibernator().wake(player.getWorld());
+        plugin.getPrewarmer().recordEntry(player.getWorld().getName());
         if (player.hasPermission("worlds.override")) return;
         final MyWorld myWorld = plugin.worldByName(player.getWorld().getName());
         if (myWorld == null) return;
-        final GameMode gameMode = myWorld.getGameMode();
+        final GameMode gameMode = myWorld.getEffectiveGameMode();
         if (gameMode != null) player.setGameMode(gameMode);
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
         final Player player = event.getPlayer();
+        plugin.getHibernator().wake(player.getWorld());
+        plugin.getPrewarmer().recordEntry(player.getWorld().getName());
         if (player.hasPermission("worlds.override") && player.isPermissionSet("worlds.override")) return;
         final MyWorld myWorld = plugin.worldByName(player.getWorld().getName());
         if (myWorld == null) return;
-        final GameMode gameMode = myWorld.getGameMode();
+        final GameMode gameMode = myWorld.getEffectiveGameMode();
         if (gameMode != null) player.setGameMode(gameMode);
     }
 }
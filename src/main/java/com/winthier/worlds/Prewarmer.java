@@ -0,0 +1,180 @@
+package com.winthier.worlds;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Load worlds ahead of their LoadWindows, or ahead of the demand
+ * predicted from past player entries, and warm their spawn chunks.
+ * Worlds loaded this way are unloaded again once the window or
+ * demand is over and they are empty. AutoLoad worlds are left alone.
+ *
+ * Learned usage is one exponentially weighted average of player
+ * entries for each hour of the week, stored in usage.yml.
+ */
+@RequiredArgsConstructor
+final class Prewarmer {
+    private static final int HOURS_PER_WEEK = 7 * 24;
+    private static final long CHECK_INTERVAL = 20L * 60L;
+    private final WorldsPlugin plugin;
+    private final Map<String, Usage> usageMap = new HashMap<>();
+    private final Set<String> warm = new HashSet<>();
+    private final Set<String> scheduled = new HashSet<>();
+    private int lastHour = -1;
+    private BukkitTask task;
+
+    private static final class Usage {
+        private final double[] buckets = new double[HOURS_PER_WEEK];
+        private int current;
+    }
+
+    void enable() {
+        if (!plugin.getConfig().getBoolean("prewarm.Enabled", false)) return;
+        loadUsage();
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::check, 20L, CHECK_INTERVAL);
+    }
+
+    void disable() {
+        if (task == null) return;
+        task.cancel();
+        task = null;
+        if (isLearning()) saveUsage();
+    }
+
+    private boolean isLearning() {
+        return plugin.getConfig().getBoolean("prewarm.Learning", false);
+    }
+
+    boolean isWarm(String name) {
+        return warm.contains(name);
+    }
+
+    int getWarmRadius() {
+        return Math.max(0, plugin.getConfig().getInt("prewarm.WarmRadius", 2));
+    }
+
+    void recordEntry(String worldName) {
+        if (task == null || !isLearning()) return;
+        MyWorld myWorld = plugin.worldByName(worldName);
+        if (myWorld == null || myWorld.isAutoLoad()) return;
+        usageMap.computeIfAbsent(worldName, n -> new Usage()).current += 1;
+    }
+
+    private static int hourOfWeek(LocalDateTime time) {
+        return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+    }
+
+    private boolean isPredicted(String name, LocalDateTime time) {
+        Usage usage = usageMap.get(name);
+        if (usage == null) return false;
+        double threshold = plugin.getConfig().getDouble("prewarm.Threshold", 1.0);
+        return usage.buckets[hourOfWeek(time)] >= threshold;
+    }
+
+    private void check() {
+        final LocalDateTime now = LocalDateTime.now();
+        final LocalDateTime soon = now.plusMinutes(plugin.getConfig().getLong("prewarm.Minutes", 5L));
+        final boolean learning = isLearning();
+        final int hour = hourOfWeek(now);
+        if (learning && lastHour >= 0 && hour != lastHour) {
+            rollover(lastHour);
+            saveUsage();
+        }
+        lastHour = hour;
+        for (MyWorld myWorld : plugin.getWorlds()) {
+            if (myWorld.isAutoLoad()) continue;
+            final String name = myWorld.getName();
+            boolean demand = myWorld.isInLoadWindow(now) || myWorld.isInLoadWindow(soon)
+                || (learning && (isPredicted(name, now) || isPredicted(name, soon)));
+            World world = myWorld.getWorld();
+            if (demand) {
+                if (world == null) {
+                    scheduled.add(name);
+                    plugin.loadWorld(name).whenComplete((loaded, throwable) -> {
+                            if (throwable != null) {
+                                plugin.getLogger().log(Level.SEVERE, "[" + name + "] Prewarm", throwable);
+                                scheduled.remove(name);
+                                return;
+                            }
+                            warm(name, loaded);
+                        });
+                } else if (!warm.contains(name)) {
+                    warm(name, world);
+                }
+            } else if (warm.contains(name) || scheduled.contains(name)) {
+                if (world == null) {
+                    warm.remove(name);
+                    scheduled.remove(name);
+                    continue;
+                }
+                if (warm.remove(name)) myWorld.applyKeepLoaded(world);
+                if (scheduled.contains(name) && world.getPlayerCount() == 0) {
+                    scheduled.remove(name);
+                    plugin.getLogger().info("[" + name + "] Unloading after load window");
+                    plugin.unloadWorld(name);
+                }
+            }
+        }
+    }
+
+    private void warm(String name, World world) {
+        MyWorld myWorld = plugin.worldByName(name);
+        if (myWorld == null) return;
+        warm.add(name);
+        myWorld.applyKeepLoaded(world);
+    }
+
+    private void rollover(int hour) {
+        final double weight = plugin.getConfig().getDouble("prewarm.Weight", 0.25);
+        for (Usage usage : usageMap.values()) {
+            usage.buckets[hour] = usage.buckets[hour] * (1.0 - weight) + (double) usage.current * weight;
+            usage.current = 0;
+        }
+    }
+
+    private File getUsageFile() {
+        return new File(plugin.getDataFolder(), "usage.yml");
+    }
+
+    private void loadUsage() {
+        usageMap.clear();
+        YamlConfiguration yml = YamlConfiguration.loadConfiguration(getUsageFile());
+        for (String key : yml.getKeys(false)) {
+            List<Double> list = yml.getDoubleList(key);
+            if (list.size() != HOURS_PER_WEEK) continue;
+            Usage usage = new Usage();
+            for (int i = 0; i < HOURS_PER_WEEK; i += 1) {
+                usage.buckets[i] = list.get(i);
+            }
+            usageMap.put(key, usage);
+        }
+    }
+
+    private void saveUsage() {
+        YamlConfiguration yml = new YamlConfiguration();
+        for (Map.Entry<String, Usage> entry : usageMap.entrySet()) {
+            List<Double> list = new ArrayList<>(HOURS_PER_WEEK);
+            for (double value : entry.getValue().buckets) {
+                list.add(value);
+            }
+            yml.set(entry.getKey(), list);
+        }
+        try {
+            yml.save(getUsageFile());
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.SEVERE, "Saving usage.yml", ioe);
+        }
+    }
+}
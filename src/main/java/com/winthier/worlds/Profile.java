@@ -0,0 +1,71 @@
+package com.winthier.worlds;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import org.bukkit.GameMode;
+import org.bukkit.GameRule;
+import org.bukkit.util.NumberConversions;
+
+/**
+ * A set of world settings in the profiles section, shared by all
+ * worlds which name it with the Inherit key. Profiles may inherit
+ * from other profiles. Everything is merged with the parent and
+ * converted once when the configuration is parsed. Profiles are
+ * immutable: their settings and border are private copies, and the
+ * getters return copies of those.
+ *
+ * The keys a profile may contain are GameRules, Settings, Border and
+ * GameMode. A world's own values take precedence.
+ */
+public final class Profile {
+    @Getter private final String name;
+    @Getter private final Map<GameRule<?>, Object> gameRules;
+    private final MyWorld.Settings settings;
+    private final MyWorld.Border border;
+    @Getter private final GameMode gameMode;
+
+    Profile(final String name, final MyWorld template, final Profile parent) {
+        this.name = name;
+        Map<GameRule<?>, Object> rules = new HashMap<>();
+        if (parent != null) rules.putAll(parent.gameRules);
+        if (template.getGameRules() != null) {
+            for (Map.Entry<GameRule<?>, Object> entry : template.getGameRules().entrySet()) {
+                Object value = entry.getValue();
+                if (entry.getKey().getType() == Integer.class) {
+                    value = NumberConversions.toInt(value);
+                } else if (entry.getKey().getType() == Boolean.class && !(value instanceof Boolean)) {
+                    value = Boolean.parseBoolean(value.toString());
+                }
+                rules.put(entry.getKey(), value);
+            }
+        }
+        this.gameRules = Collections.unmodifiableMap(rules);
+        MyWorld.Settings parentSettings = parent != null ? parent.settings : null;
+        if (parentSettings == null && template.getSettings() == null) {
+            this.settings = null;
+        } else {
+            this.settings = MyWorld.Settings.merge(parentSettings != null ? parentSettings : new MyWorld.Settings(),
+                                                   template.getSettings() != null ? template.getSettings() : new MyWorld.Settings());
+        }
+        if (template.getBorder() != null) {
+            this.border = template.getBorder().copy();
+        } else {
+            this.border = parent != null ? parent.border : null;
+        }
+        this.gameMode = template.getGameMode() != null || parent == null
+            ? template.getGameMode()
+            : parent.gameMode;
+    }
+
+    public MyWorld.Settings getSettings() {
+        return settings != null
+            ? MyWorld.Settings.merge(settings, new MyWorld.Settings())
+            : null;
+    }
+
+    public MyWorld.Border getBorder() {
+        return border != null ? border.copy() : null;
+    }
+}
@@ -0,0 +1,349 @@
+package com.winthier.worlds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * Re-encode the chunks in the region files of an unloaded world
+ * with another compression codec or level. Each region file is one
+ * task on a small thread pool. The new file is written next to the
+ * old one, then moved over it. When the plugin is disabled, queued
+ * files are skipped and the ones in progress are waited for, so
+ * that no region file is still being replaced once a world may be
+ * loaded again.
+ *
+ * Chunks stored with a codec the JDK cannot read, such as LZ4, or
+ * outside of the region file are copied as they are. So are chunks
+ * which would no longer fit into a region file.
+ */
+@RequiredArgsConstructor
+final class RegionRecompressor {
+    private static final int SECTOR = 4096;
+    private static final int HEADER = 2 * SECTOR;
+    private static final int MAX_SECTORS = 255;
+    private static final int EXTERNAL = 128;
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long DISABLE_TIMEOUT = 60L;
+    private final WorldsPlugin plugin;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    /**
+     * Compression codecs as stored in the chunk header.
+     */
+    @RequiredArgsConstructor
+    enum Codec {
+        GZIP(1),
+        ZLIB(2),
+        NONE(3);
+
+        private final int id;
+
+        static Codec of(int id) {
+            for (Codec it : values()) {
+                if (it.id == id) return it;
+            }
+            return null;
+        }
+
+        static Codec of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException iae) {
+                return null;
+            }
+        }
+    }
+
+    @Value
+    static final class Result {
+        private int files;
+        private int failed;
+        private int chunks;
+        private int kept;
+        private long sizeBefore;
+        private long sizeAfter;
+        private long millis;
+    }
+
+    @Value
+    private static final class FileResult {
+        private int chunks;
+        private int kept;
+        private long sizeBefore;
+        private long sizeAfter;
+    }
+
+    boolean isRunning(String worldName) {
+        return running.contains(worldName);
+    }
+
+    /**
+     * Recompress all region files below the world folder. The world
+     * must not be loaded until the callback was called, on the main
+     * thread, or with null if the operation failed.
+     * @return false if this world is already being recompressed
+     */
+    boolean recompress(String name, Path folder, Codec codec, int level, Consumer<Result> callback) {
+        if (!running.add(name)) return false;
+        if (executor == null) {
+            final int threads = Math.max(1, plugin.getConfig().getInt("recompress.Threads", 2));
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "Worlds-Recompress");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+        final ExecutorService finalExecutor = executor;
+        final long start = System.currentTimeMillis();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                Result result = null;
+                try {
+                    result = run(name, folder, codec, level, finalExecutor, start);
+                } catch (IOException | RuntimeException e) {
+                    plugin.getLogger().log(Level.SEVERE, "[" + name + "] Recompressing region files", e);
+                } finally {
+                    done(name, callback, result);
+                }
+            });
+        return true;
+    }
+
+    private Result run(String name, Path folder, Codec codec, int level, ExecutorService pool, long start) throws IOException {
+        final List<Path> files = listRegionFiles(folder);
+        final List<Future<FileResult>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(pool.submit(() -> {
+                        try {
+                            return recompressFile(file, codec, level);
+                        } catch (IOException | RuntimeException e) {
+                            plugin.getLogger().log(Level.SEVERE, "[" + name + "] Recompressing " + file, e);
+                            return null;
+                        }
+                    }));
+        }
+        int failed = 0;
+        int chunks = 0;
+        int kept = 0;
+        long sizeBefore = 0L;
+        long sizeAfter = 0L;
+        for (Future<FileResult> future : futures) {
+            FileResult it;
+            try {
+                it = future.get();
+            } catch (ExecutionException | CancellationException e) {
+                // Skipped on disable
+                it = null;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                it = null;
+            }
+            if (it == null) {
+                failed += 1;
+                continue;
+            }
+            chunks += it.chunks;
+            kept += it.kept;
+            sizeBefore += it.sizeBefore;
+            sizeAfter += it.sizeAfter;
+        }
+        return new Result(files.size(), failed, chunks, kept, sizeBefore, sizeAfter,
+                          System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Report back on the main thread. If the plugin was disabled in
+     * the meantime, there is nobody left to report to.
+     */
+    private void done(String name, Consumer<Result> callback, Result result) {
+        if (!plugin.isEnabled()) {
+            running.remove(name);
+            return;
+        }
+        try {
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    running.remove(name);
+                    callback.accept(result);
+                });
+        } catch (RuntimeException re) {
+            // Disabled while scheduling
+            running.remove(name);
+        }
+    }
+
+    /**
+     * Skip all queued files and wait for the ones in progress. The
+     * worlds stay guarded if they do not finish in time.
+     */
+    void disable() {
+        if (executor != null) {
+            for (Runnable queued : executor.shutdownNow()) {
+                if (queued instanceof Future<?> future) future.cancel(false);
+            }
+            try {
+                if (!executor.awaitTermination(DISABLE_TIMEOUT, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("Region files are still being recompressed: " + running);
+                    return;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            executor = null;
+        }
+        running.clear();
+    }
+
+    private static List<Path> listRegionFiles(Path folder) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(folder)) {
+            stream.filter(Files::isRegularFile)
+                .filter(p -> p.getFileName().toString().endsWith(".mca"))
+                .forEach(result::add);
+        }
+        return result;
+    }
+
+    private static FileResult recompressFile(Path file, Codec codec, int level) throws IOException {
+        final byte[] in = Files.readAllBytes(file);
+        if (in.length < HEADER) {
+            return new FileResult(0, 0, in.length, in.length);
+        }
+        final ByteBuffer inBuffer = ByteBuffer.wrap(in);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER);
+        // Timestamps are kept as they are
+        header.put(SECTOR, in, SECTOR, SECTOR);
+        out.write(new byte[HEADER]);
+        int chunks = 0;
+        int kept = 0;
+        for (int i = 0; i < 1024; i += 1) {
+            final int location = inBuffer.getInt(i * 4);
+            if (location == 0) continue;
+            final int offset = (location >>> 8) * SECTOR;
+            final int sectors = location & 0xFF;
+            if (offset < HEADER || sectors == 0 || offset + 5 > in.length) {
+                throw new IOException("Invalid location of chunk " + i + ": " + location);
+            }
+            final int length = inBuffer.getInt(offset);
+            if (length < 1 || offset + 4 + length > in.length) {
+                throw new IOException("Invalid length of chunk " + i + ": " + length);
+            }
+            final int type = in[offset + 4] & 0xFF;
+            final Codec oldCodec = (type & EXTERNAL) == 0 ? Codec.of(type) : null;
+            byte[] payload = null;
+            if (oldCodec != null) {
+                byte[] raw = decode(oldCodec, in, offset + 5, length - 1);
+                payload = encode(codec, level, raw);
+                if (sectorsFor(payload.length + 5) > MAX_SECTORS) payload = null;
+            }
+            final int newOffset = out.size();
+            final int written;
+            if (payload != null) {
+                writeInt(out, payload.length + 1);
+                out.write(codec.id);
+                out.write(payload);
+                written = payload.length + 5;
+                chunks += 1;
+            } else {
+                out.write(in, offset, length + 4);
+                written = length + 4;
+                kept += 1;
+            }
+            final int newSectors = sectorsFor(written);
+            out.write(new byte[newSectors * SECTOR - written]);
+            header.putInt(i * 4, ((newOffset / SECTOR) << 8) | newSectors);
+        }
+        final byte[] result = out.toByteArray();
+        System.arraycopy(header.array(), 0, result, 0, HEADER);
+        final Path tmp = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        try {
+            Files.write(tmp, result);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ioe) {
+                e.addSuppressed(ioe);
+            }
+            throw e;
+        }
+        return new FileResult(chunks, kept, in.length, result.length);
+    }
+
+    private static int sectorsFor(int bytes) {
+        return (bytes + SECTOR - 1) / SECTOR;
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static byte[] decode(Codec codec, byte[] data, int offset, int length) throws IOException {
+        if (codec == Codec.NONE) {
+            byte[] result = new byte[length];
+            System.arraycopy(data, offset, result, 0, length);
+            return result;
+        }
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data, offset, length);
+        try (InputStream in = codec == Codec.GZIP ? new GZIPInputStream(bytes) : new InflaterInputStream(bytes)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] encode(Codec codec, int level, byte[] data) throws IOException {
+        if (codec == Codec.NONE) return data;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+        if (codec == Codec.GZIP) {
+            try (GZIPOutputStream out = new LeveledGZIPOutputStream(bytes, level)) {
+                out.write(data);
+            }
+        } else {
+            Deflater deflater = new Deflater(level);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+                out.write(data);
+            } finally {
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+        LeveledGZIPOutputStream(final OutputStream out, final int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.winthier.worlds;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Cache of verified safe spawn locations. The chunks around the
+ * configured spawn are captured as snapshots on the main thread and
+ * searched on an async thread. Block changes within the search area
+ * invalidate the cached result, which is then computed again.
+ *
+ * Until a result is available, the configured spawn is returned.
+ */
+@RequiredArgsConstructor
+final class SafeSpawns {
+    private static final Set<Material> DANGER = Set.of(Material.LAVA,
+                                                       Material.FIRE,
+                                                       Material.SOUL_FIRE,
+                                                       Material.MAGMA_BLOCK,
+                                                       Material.CACTUS,
+                                                       Material.CAMPFIRE,
+                                                       Material.SOUL_CAMPFIRE,
+                                                       Material.SWEET_BERRY_BUSH,
+                                                       Material.WITHER_ROSE,
+                                                       Material.POWDER_SNOW,
+                                                       Material.POINTED_DRIPSTONE);
+    private static final long RECOMPUTE_DELAY = 20L;
+    private final WorldsPlugin plugin;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private static final class Entry {
+        private Location target;
+        private Location safe;
+        private int minX;
+        private int minZ;
+        private int maxX;
+        private int maxZ;
+        private int generation;
+        private boolean pending;
+        private boolean scheduled;
+    }
+
+    private boolean isEnabled() {
+        return plugin.getConfig().getBoolean("safeSpawn.Enabled", true);
+    }
+
+    /**
+     * Get the cached safe location for the given spawn. If none is
+     * cached yet, start the search and return the spawn as is.
+     */
+    Location get(World world, Location spawn) {
+        if (!isEnabled()) return spawn;
+        Entry entry = entries.get(world.getName());
+        if (entry != null && isSameBlock(entry.target, spawn)) {
+            if (entry.safe != null) return entry.safe.clone();
+            if (entry.pending) return spawn;
+        }
+        update(world, spawn);
+        return spawn;
+    }
+
+    /**
+     * Drop the cached location and search the area around spawn.
+     */
+    void update(World world, Location spawn) {
+        if (!isEnabled()) return;
+        final String name = world.getName();
+        final Entry entry = entries.computeIfAbsent(name, n -> new Entry());
+        final int generation = ++entry.generation;
+        final int radius = Math.max(0, plugin.getConfig().getInt("safeSpawn.Radius", 16));
+        final int vertical = Math.max(0, plugin.getConfig().getInt("safeSpawn.Vertical", 16));
+        final Location target = spawn.clone();
+        entry.target = target;
+        entry.safe = null;
+        entry.pending = true;
+        entry.minX = target.getBlockX() - radius;
+        entry.minZ = target.getBlockZ() - radius;
+        entry.maxX = target.getBlockX() + radius;
+        entry.maxZ = target.getBlockZ() + radius;
+        final Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+        final List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int cz = entry.minZ >> 4; cz <= entry.maxZ >> 4; cz += 1) {
+            for (int cx = entry.minX >> 4; cx <= entry.maxX >> 4; cx += 1) {
+                final long key = ChunkTickets.chunkKey(cx, cz);
+                futures.add(world.getChunkAtAsync(cx, cz)
+                            .thenAccept(chunk -> snapshots.put(key, chunk.getChunkSnapshot(true, false, false))));
+            }
+        }
+        final Search search = new Search(snapshots, target, radius, vertical,
+                                         world.getMinHeight(), world.getMaxHeight(), world.hasCeiling());
+        final Executor async = task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .thenApplyAsync(v -> search.run(), async)
+            .whenComplete((result, throwable) -> plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        if (entries.get(name) != entry || entry.generation != generation) return;
+                        entry.pending = false;
+                        if (throwable != null) {
+                            plugin.getLogger().log(Level.SEVERE, "[" + name + "] Safe spawn search", throwable);
+                            entry.safe = target;
+                        } else {
+                            entry.safe = result;
+                        }
+                    }));
+    }
+
+    /**
+     * Called whenever a block changes. Invalidate the cached spawn if
+     * the block is within its search area and search again a little
+     * later.
+     */
+    void onBlockChange(Block block) {
+        Entry entry = entries.get(block.getWorld().getName());
+        if (entry == null || entry.scheduled) return;
+        if (block.getX() < entry.minX || block.getX() > entry.maxX) return;
+        if (block.getZ() < entry.minZ || block.getZ() > entry.maxZ) return;
+        entry.safe = null;
+        entry.pending = true;
+        entry.generation += 1;
+        entry.scheduled = true;
+        final World world = block.getWorld();
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                entry.scheduled = false;
+                if (entries.get(world.getName()) != entry) return;
+                update(world, entry.target);
+            }, RECOMPUTE_DELAY);
+    }
+
+    void clear(World world) {
+        entries.remove(world.getName());
+    }
+
+    /**
+     * Check a spot in a loaded chunk of a live world with the same
+     * rules as the spawn search: solid and harmless ground, and two
+     * passable blocks to stand in.
+     */
+    static boolean isSafe(World world, int x, int y, int z) {
+        return isSafe(world::getType, x, y, z, world.getMinHeight(), world.getMaxHeight());
+    }
+
+    private interface BlockTypes {
+        Material getType(int x, int y, int z);
+    }
+
+    private static boolean isSafe(BlockTypes types, int x, int y, int z, int minY, int maxY) {
+        if (y - 1 < minY || y + 1 >= maxY) return false;
+        Material ground = types.getType(x, y - 1, z);
+        if (ground == null || !ground.isSolid() || DANGER.contains(ground)) return false;
+        return isPassable(types.getType(x, y, z)) && isPassable(types.getType(x, y + 1, z));
+    }
+
+    private static boolean isPassable(Material material) {
+        return material != null
+            && !material.isSolid()
+            && material != Material.WATER
+            && !DANGER.contains(material);
+    }
+
+    private static boolean isSameBlock(Location a, Location b) {
+        return a.getBlockX() == b.getBlockX()
+            && a.getBlockY() == b.getBlockY()
+            && a.getBlockZ() == b.getBlockZ();
+    }
+
+    /**
+     * The off-thread part. Only reads chunk snapshots.
+     */
+    @RequiredArgsConstructor
+    private static final class Search {
+        private final Map<Long, ChunkSnapshot> snapshots;
+        private final Location target;
+        private final int radius;
+        private final int vertical;
+        private final int minY;
+        private final int maxY;
+        private final boolean hasCeiling;
+
+        private Location run() {
+            final int bx = target.getBlockX();
+            final int by = target.getBlockY();
+            final int bz = target.getBlockZ();
+            if (isSafe(bx, by, bz)) return target;
+            List<int[]> columns = new ArrayList<>();
+            for (int dz = -radius; dz <= radius; dz += 1) {
+                for (int dx = -radius; dx <= radius; dx += 1) {
+                    columns.add(new int[] {dx, dz});
+                }
+            }
+            columns.sort(Comparator.comparingInt(c -> c[0] * c[0] + c[1] * c[1]));
+            for (int[] column : columns) {
+                final int x = bx + column[0];
+                final int z = bz + column[1];
+                for (int dy = 0; dy <= vertical; dy += 1) {
+                    if (isSafe(x, by + dy, z)) return at(x, by + dy, z);
+                    if (dy > 0 && isSafe(x, by - dy, z)) return at(x, by - dy, z);
+                }
+                if (!hasCeiling) {
+                    ChunkSnapshot snapshot = snapshots.get(ChunkTickets.chunkKey(x >> 4, z >> 4));
+                    if (snapshot == null) continue;
+                    int y = snapshot.getHighestBlockYAt(x & 15, z & 15) + 1;
+                    if (isSafe(x, y, z)) return at(x, y, z);
+                }
+            }
+            return target;
+        }
+
+        private Location at(int x, int y, int z) {
+            return new Location(target.getWorld(), x + 0.5, y, z + 0.5, target.getYaw(), target.getPitch());
+        }
+
+        private Material getType(int x, int y, int z) {
+            ChunkSnapshot snapshot = snapshots.get(ChunkTickets.chunkKey(x >> 4, z >> 4));
+            if (snapshot == null) return null;
+            return snapshot.getBlockType(x & 15, y, z & 15);
+        }
+
+        private boolean isSafe(int x, int y, int z) {
+            return SafeSpawns.isSafe(this::getType, x, y, z, minY, maxY);
+        }
+    }
+}
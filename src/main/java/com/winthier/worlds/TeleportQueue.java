@@ -0,0 +1,212 @@
+package com.winthier.worlds;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.HeightMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.format.NamedTextColor.*;
+
+/**
+ * Teleport many players into a world without loading all their
+ * destination chunks in the same tick. Players are admitted a few
+ * per tick, and admission pauses while the average tick time is
+ * over budget or too many teleports are still in flight. Arrivals are spread over a ring of points around the
+ * spawn so they do not all land in the same chunk. The ring chunks
+ * are loaded ahead of time and held until the job is done.
+ */
+@RequiredArgsConstructor
+public final class TeleportQueue {
+    private static final long PROGRESS_INTERVAL = 100L;
+    private final WorldsPlugin plugin;
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+    private BukkitTask task;
+    private long ticks;
+    private int inFlight;
+
+    @RequiredArgsConstructor
+    private final class Job {
+        private final CommandSender sender;
+        private final String worldName;
+        private final Location center;
+        private final int total;
+        private final ArrayDeque<UUID> queue = new ArrayDeque<>();
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final Set<Long> held = new HashSet<>();
+        private int inFlight;
+        private int done;
+        private int failed;
+        private int ring;
+
+        private boolean isFinished() {
+            return queue.isEmpty() && inFlight == 0;
+        }
+
+        private void report(boolean finished) {
+            if (sender == null) return;
+            if (finished) {
+                sender.sendMessage(text("Teleported " + done + "/" + total + " players to " + worldName
+                                        + (failed > 0 ? " (" + failed + " failed)" : ""), YELLOW));
+            } else {
+                sender.sendMessage(text("Teleporting to " + worldName + ": " + done + "/" + total
+                                        + ", " + queue.size() + " queued", GRAY));
+            }
+        }
+    }
+
+    /**
+     * Queue players for teleport to a location. The sender, if any,
+     * receives progress reports.
+     * @return a future of the number of players teleported
+     */
+    public CompletableFuture<Integer> teleport(Collection<? extends Player> players, Location center, CommandSender sender) {
+        Job job = new Job(sender, center.getWorld().getName(), center.clone(), players.size());
+        for (Player player : players) {
+            job.queue.add(player.getUniqueId());
+        }
+        if (job.isFinished()) {
+            job.future.complete(0);
+            return job.future;
+        }
+        preloadRing(job, center.getWorld());
+        jobs.add(job);
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+        return job.future;
+    }
+
+    private void tick() {
+        ticks += 1;
+        final double budget = plugin.getConfig().getDouble("massTeleport.TickBudget", 45.0);
+        if (plugin.getServer().getAverageTickTime() <= budget) {
+            final int maxInFlight = Math.max(1, plugin.getConfig().getInt("massTeleport.MaxInFlight", 32));
+            int admit = Math.min(Math.max(1, plugin.getConfig().getInt("massTeleport.PerTick", 4)),
+                                 maxInFlight - inFlight);
+            for (Job job : jobs) {
+                while (admit > 0 && !job.queue.isEmpty()) {
+                    admit(job, job.queue.poll());
+                    admit -= 1;
+                }
+                if (admit <= 0) break;
+            }
+        }
+        for (Job job : jobs) {
+            if (job.isFinished()) {
+                releaseRing(job);
+                job.report(true);
+                job.future.complete(job.done);
+            } else if (ticks % PROGRESS_INTERVAL == 0L) {
+                job.report(false);
+            }
+        }
+        jobs.removeIf(Job::isFinished);
+        if (jobs.isEmpty()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void admit(Job job, UUID uuid) {
+        Player player = plugin.getServer().getPlayer(uuid);
+        World world = plugin.getServer().getWorld(job.worldName);
+        if (player == null || world == null) {
+            job.failed += 1;
+            return;
+        }
+        final Location location = getRingPoint(job, world);
+        job.inFlight += 1;
+        inFlight += 1;
+        player.teleportAsync(location).whenComplete((success, throwable) -> {
+                if (plugin.getServer().isPrimaryThread()) {
+                    complete(job, success, throwable);
+                } else {
+                    plugin.getServer().getScheduler().runTask(plugin, () -> complete(job, success, throwable));
+                }
+            });
+    }
+
+    private void complete(Job job, Boolean success, Throwable throwable) {
+        job.inFlight -= 1;
+        inFlight -= 1;
+        if (throwable == null && success != null && success) {
+            job.done += 1;
+        } else {
+            job.failed += 1;
+        }
+    }
+
+    private int getRingPoints() {
+        return Math.max(1, plugin.getConfig().getInt("massTeleport.RingPoints", 16));
+    }
+
+    private double getRingRadius() {
+        return plugin.getConfig().getDouble("massTeleport.RingRadius", 24.0);
+    }
+
+    private int getRingX(Job job, int index) {
+        final double angle = 2.0 * Math.PI * (double) index / (double) getRingPoints();
+        return job.center.getBlockX() + (int) Math.round(Math.cos(angle) * getRingRadius());
+    }
+
+    private int getRingZ(Job job, int index) {
+        final double angle = 2.0 * Math.PI * (double) index / (double) getRingPoints();
+        return job.center.getBlockZ() + (int) Math.round(Math.sin(angle) * getRingRadius());
+    }
+
+    /**
+     * Load the ring chunks ahead of time, so they are likely loaded
+     * by the time the first players are admitted, and hold them
+     * until the job is finished.
+     */
+    private void preloadRing(Job job, World world) {
+        if (getRingRadius() <= 0.0 || world.hasCeiling()) return;
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < getRingPoints(); i += 1) {
+            keys.add(ChunkTickets.chunkKey(getRingX(job, i) >> 4, getRingZ(job, i) >> 4));
+        }
+        for (long key : keys) {
+            world.getChunkAtAsync(ChunkTickets.chunkX(key), ChunkTickets.chunkZ(key)).thenAccept(chunk -> {
+                    if (job.isFinished() || !chunk.isLoaded()) return;
+                    if (job.held.add(key)) plugin.getChunkTickets().hold(chunk.getWorld(), key);
+                });
+        }
+    }
+
+    private void releaseRing(Job job) {
+        World world = plugin.getServer().getWorld(job.worldName);
+        if (world != null) {
+            for (long key : job.held) {
+                plugin.getChunkTickets().release(world, key);
+            }
+        }
+        job.held.clear();
+    }
+
+    /**
+     * Pick the next point on the ring around the center. Worlds with
+     * a ceiling always get the center, which is the safe spawn.
+     * Elsewhere the height is taken from the heightmap, ignoring
+     * leaves, if the chunk is already loaded. The spot must pass the
+     * same check as a safe spawn, otherwise the center is used.
+     */
+    private Location getRingPoint(Job job, World world) {
+        final int index = job.ring++ % getRingPoints();
+        if (getRingRadius() <= 0.0 || world.hasCeiling()) return job.center.clone();
+        final int x = getRingX(job, index);
+        final int z = getRingZ(job, index);
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) return job.center.clone();
+        final int y = world.getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES) + 1;
+        if (!SafeSpawns.isSafe(world, x, y, z)) return job.center.clone();
+        return new Location(world, x + 0.5, y, z + 0.5, job.center.getYaw(), job.center.getPitch());
+    }
+}
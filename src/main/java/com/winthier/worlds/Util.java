@@ -1,5 +1,11 @@
 package com.winthier.worlds;
 
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -49,6 +55,23 @@ public final class Util {
         return String.join("_", tokens.toArray(new String[0]));
     }
 
+    public static void deleteRecursively(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException ioe) throws IOException {
+                    if (ioe != null) throw ioe;
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+    }
+
     public static final Map<String, GameRule> GAME_RULE_CONVERSION = new HashMap<>() {{
         put("doFireTick", GameRules.FIRE_SPREAD_RADIUS_AROUND_PLAYER);
         put("allowFireTicksAwayFromPlayer", GameRules.FIRE_SPREAD_RADIUS_AROUND_PLAYER);
@@ -14,14 +14,16 @@ import static net.kyori.adventure.text.Component.text;
 import static net.kyori.adventure.text.format.NamedTextColor.*;
 
 public final class WTPCommand extends AbstractCommand<WorldsPlugin> {
+    private static final String ALL = "@all";
+
     protected WTPCommand(final WorldsPlugin plugin) {
         super(plugin, "wtp");
     }
 
     protected void onEnable() {
-        rootNode.arguments("[player] <world>")
+        rootNode.arguments("[player|@all] <world>")
             .description("Teleport to world")
-            .completers(CommandArgCompleter.supplyList(this::listLoadedWorlds),
+            .completers(CommandArgCompleter.supplyList(this::listFirstArgs),
                         CommandArgCompleter.supplyList(this::listLoadedWorlds))
             .senderCaller(this::wtp);
     }
@@ -36,6 +38,9 @@ public final class WTPCommand extends AbstractCommand<WorldsPlugin> {
                 throw new CommandWarn("Player expected");
             }
             name = args[0];
+        } else if (args.length == 2 && args[0].equals(ALL)) {
+            target = null;
+            name = args[1];
         } else if (args.length == 2) {
             target = plugin.getServer().getPlayerExact(args[0]);
             if (target == null) {
@@ -48,14 +53,24 @@ public final class WTPCommand extends AbstractCommand<WorldsPlugin> {
         MyWorld myWorld = plugin.worldByName(name);
         Location loc = null;
         if (myWorld != null) {
-            loc = myWorld.getSpawnLocation();
+            loc = myWorld.getSafeSpawnLocation();
         } else {
             World world = plugin.getServer().getWorld(name);
-            if (world != null) loc = world.getSpawnLocation();
+            if (world != null) loc = plugin.getSafeSpawns().get(world, world.getSpawnLocation());
         }
         if (loc == null) {
             throw new CommandWarn("World not found: " + name);
         }
+        if (target == null) {
+            List<Player> players = new ArrayList<>();
+            for (Player online : plugin.getServer().getOnlinePlayers()) {
+                if (online.getWorld().equals(loc.getWorld())) continue;
+                players.add(online);
+            }
+            plugin.getTeleportQueue().teleport(players, loc, sender);
+            sender.sendMessage(text("Queued " + players.size() + " players for teleport to world " + name, YELLOW));
+            return true;
+        }
         target.teleport(loc);
         sender.sendMessage(text("Teleported " + target.getName() + " to spawn location of world " + name, YELLOW));
         return true;
@@ -68,4 +83,10 @@ public final class WTPCommand extends AbstractCommand<WorldsPlugin> {
         }
         return result;
     }
+
+    private List<String> listFirstArgs() {
+        List<String> result = listLoadedWorlds();
+        result.add(ALL);
+        return result;
+    }
 }
@@ -0,0 +1,27 @@
+package com.winthier.worlds;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Called whenever the settings of a configured world were
+ * (re)applied to its Bukkit world.
+ */
+@Getter @RequiredArgsConstructor
+public final class WorldAppliedEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+    private final MyWorld myWorld;
+    private final World world;
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+}
@@ -0,0 +1,264 @@
+package com.winthier.worlds;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.bukkit.World;
+
+/**
+ * Incremental world backups. The world is saved on the main thread,
+ * then its folder is copied into a new snapshot directory on a
+ * background thread. Files whose content hash did not change since
+ * the previous snapshot are hard linked instead of copied, so a
+ * backup of an idle world costs next to no disk space or I/O.
+ *
+ * Each snapshot carries a manifest of size, modification time and
+ * hash per file. A file which still matches the size and time of
+ * the previous manifest is not even read.
+ */
+@RequiredArgsConstructor
+final class WorldBackup {
+    private static final String MANIFEST = "manifest.txt";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Set<String> IGNORED = Set.of("session.lock");
+    private final WorldsPlugin plugin;
+    private final Set<String> running = new HashSet<>();
+
+    @Value
+    static final class Result {
+        private String snapshot;
+        private int copied;
+        private int linked;
+        private long bytesCopied;
+        private int pruned;
+        private long millis;
+    }
+
+    @Value
+    private static final class Entry {
+        private String hash;
+        private long size;
+        private long modified;
+    }
+
+    File getFolder() {
+        File file = new File(plugin.getConfig().getString("backup.Folder", "backups"));
+        return file.isAbsolute() ? file : new File(plugin.getDataFolder(), file.getPath());
+    }
+
+    /**
+     * Save the world, waiting for all chunk writes to finish, and
+     * start a backup in the background. Auto saving is suspended
+     * until the copy is done. The callback is
+     * called on the main thread, with null if the backup failed.
+     * @return false if a backup of this world is already running
+     */
+    boolean backup(World world, Consumer<Result> callback) {
+        final String name = world.getName();
+        if (!running.add(name)) return false;
+        final boolean autoSave = world.isAutoSave();
+        // Flush, so that no region file is still being written
+        // while it is copied
+        world.save(true);
+        world.setAutoSave(false);
+        final Path source = world.getWorldFolder().toPath();
+        final Path target = getFolder().toPath().resolve(name);
+        final int retention = plugin.getConfig().getInt("backup.Retention", 7);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                Result result = null;
+                try {
+                    result = run(source, target, retention);
+                } catch (IOException ioe) {
+                    plugin.getLogger().log(Level.SEVERE, "[" + name + "] Backup failed", ioe);
+                }
+                final Result finalResult = result;
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        running.remove(name);
+                        World loaded = plugin.getServer().getWorld(name);
+                        if (loaded != null) loaded.setAutoSave(autoSave);
+                        callback.accept(finalResult);
+                    });
+            });
+        return true;
+    }
+
+    private static Result run(Path source, Path target, int retention) throws IOException {
+        final long start = System.currentTimeMillis();
+        Files.createDirectories(target);
+        for (Path stale : list(target, true)) {
+            Util.deleteRecursively(stale);
+        }
+        List<Path> snapshots = list(target, false);
+        final Path previous = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+        final Map<String, Entry> oldManifest = previous != null
+            ? readManifest(previous)
+            : Map.of();
+        final Map<String, Entry> newManifest = new HashMap<>();
+        final String snapshotName = LocalDateTime.now().format(FORMAT);
+        final Path snapshot = target.resolve(snapshotName);
+        if (Files.exists(snapshot)) {
+            throw new IOException("Snapshot exists: " + snapshot);
+        }
+        final Path tmp = target.resolve(snapshotName + TMP_SUFFIX);
+        int copied = 0;
+        int linked = 0;
+        long bytesCopied = 0L;
+        for (Path file : listFiles(source)) {
+            String key = source.relativize(file).toString().replace(File.separatorChar, '/');
+            BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attr.size();
+            long modified = attr.lastModifiedTime().toMillis();
+            Entry old = oldManifest.get(key);
+            Path dest = tmp.resolve(key);
+            Files.createDirectories(dest.getParent());
+            if (old != null && old.size == size && old.modified == modified) {
+                // Unchanged, so the file is not read at all
+                newManifest.put(key, old);
+                if (link(previous.resolve(key), dest)) {
+                    linked += 1;
+                    continue;
+                }
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+            } else {
+                // Changed or new: the file is hashed while it is
+                // copied, then replaced by a link if the content
+                // turns out to be the same after all.
+                String hash = copyAndHash(file, dest);
+                Files.setLastModifiedTime(dest, attr.lastModifiedTime());
+                newManifest.put(key, new Entry(hash, size, modified));
+                if (old != null && old.hash.equals(hash)) {
+                    Path linkTmp = dest.resolveSibling(dest.getFileName() + TMP_SUFFIX);
+                    if (link(previous.resolve(key), linkTmp)) {
+                        Files.move(linkTmp, dest, StandardCopyOption.REPLACE_EXISTING);
+                        linked += 1;
+                        continue;
+                    }
+                }
+            }
+            copied += 1;
+            bytesCopied += size;
+        }
+        writeManifest(tmp, newManifest);
+        Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        snapshots.add(snapshot);
+        int pruned = 0;
+        if (retention > 0) {
+            while (snapshots.size() > retention) {
+                Util.deleteRecursively(snapshots.remove(0));
+                pruned += 1;
+            }
+        }
+        return new Result(snapshotName, copied, linked, bytesCopied, pruned, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * List finished snapshots, oldest first, or unfinished ones.
+     */
+    private static List<Path> list(Path target, boolean unfinished) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(target)) {
+            stream.filter(Files::isDirectory)
+                .filter(p -> p.getFileName().toString().endsWith(TMP_SUFFIX) == unfinished)
+                .sorted()
+                .forEach(result::add);
+        }
+        return result;
+    }
+
+    private static List<Path> listFiles(Path source) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(source)) {
+            stream.filter(Files::isRegularFile)
+                .filter(p -> !IGNORED.contains(p.getFileName().toString()))
+                .forEach(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Create a hard link to an existing file.
+     * @return false if the file system does not support it
+     */
+    private static boolean link(Path existing, Path link) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static String copyAndHash(Path file, Path dest) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+        byte[] buffer = new byte[65536];
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = Files.newOutputStream(dest, StandardOpenOption.CREATE_NEW)) {
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, len);
+                out.write(buffer, 0, len);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static Map<String, Entry> readManifest(Path snapshot) throws IOException {
+        Map<String, Entry> result = new HashMap<>();
+        Path file = snapshot.resolve(MANIFEST);
+        if (!Files.isRegularFile(file)) return result;
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] toks = line.split("\t", 4);
+                if (toks.length != 4) continue;
+                try {
+                    result.put(toks[3], new Entry(toks[0], Long.parseLong(toks[1]), Long.parseLong(toks[2])));
+                } catch (NumberFormatException nfe) {
+                    continue;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void writeManifest(Path snapshot, Map<String, Entry> manifest) throws IOException {
+        Files.createDirectories(snapshot);
+        try (BufferedWriter out = Files.newBufferedWriter(snapshot.resolve(MANIFEST))) {
+            for (Map.Entry<String, Entry> it : manifest.entrySet()) {
+                Entry entry = it.getValue();
+                out.write(entry.hash + "\t" + entry.size + "\t" + entry.modified + "\t" + it.getKey());
+                out.newLine();
+            }
+        }
+    }
+}
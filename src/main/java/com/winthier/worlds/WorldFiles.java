@@ -0,0 +1,218 @@
+package com.winthier.worlds;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Storage of world configurations. Worlds are either stored in the
+ * worlds section of the config.yml, or, with storage.SplitFiles,
+ * each in its own worlds/NAME.yml file. Split files are parsed in
+ * parallel and only the file of a changed world is rewritten.
+ *
+ * Entries which remain in the config.yml are still read in split
+ * mode, but a file of the same name takes precedence. Saving such a
+ * world moves it to its own file.
+ *
+ * Profiles are always read from the config.yml and linked to the
+ * worlds which inherit them once all worlds are parsed.
+ *
+ * The parse methods do not touch the Bukkit API and may be called
+ * from any thread. The MyWorld instances they return must not be
+ * shared before parsing is complete.
+ */
+@RequiredArgsConstructor
+final class WorldFiles {
+    private static final String SUFFIX = ".yml";
+    private final WorldsPlugin plugin;
+
+    @Value
+    static final class Parsed {
+        private List<MyWorld> worlds;
+        private List<String> errors;
+    }
+
+    File getFolder() {
+        return new File(plugin.getDataFolder(), "worlds");
+    }
+
+    File getFile(String name) {
+        return new File(getFolder(), name + SUFFIX);
+    }
+
+    boolean isSplit() {
+        return plugin.getConfig().getBoolean("storage.SplitFiles", false);
+    }
+
+    Parsed parse(ConfigurationSection config) {
+        Map<String, MyWorld> result = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        ConfigurationSection section = config.getConfigurationSection("worlds");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                ConfigurationSection worldSection = section.getConfigurationSection(key);
+                if (worldSection == null) {
+                    errors.add("Not a world section: worlds." + key);
+                    continue;
+                }
+                result.put(key, parse(key, worldSection, errors));
+            }
+        }
+        if (config.getBoolean("storage.SplitFiles", false)) {
+            int threads = config.getInt("storage.Threads", 4);
+            parseFiles(Math.max(1, threads), result, errors);
+        }
+        Map<String, Profile> profiles = parseProfiles(config, errors);
+        for (MyWorld myWorld : result.values()) {
+            if (myWorld.getInherit() == null) continue;
+            Profile profile = profiles.get(myWorld.getInherit());
+            if (profile == null) {
+                errors.add("[" + myWorld.getName() + "] Unknown profile: " + myWorld.getInherit());
+                continue;
+            }
+            myWorld.setProfile(profile);
+        }
+        return new Parsed(new ArrayList<>(result.values()), errors);
+    }
+
+    private Map<String, Profile> parseProfiles(ConfigurationSection config, List<String> errors) {
+        Map<String, Profile> result = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("profiles");
+        if (section == null) return result;
+        for (String key : section.getKeys(false)) {
+            parseProfile(section, key, result, new HashSet<>(), errors);
+        }
+        return result;
+    }
+
+    /**
+     * Parse a profile after its parent, unless it was already
+     * parsed.
+     */
+    private Profile parseProfile(ConfigurationSection section, String key, Map<String, Profile> result,
+                                 Set<String> visiting, List<String> errors) {
+        Profile profile = result.get(key);
+        if (profile != null) return profile;
+        ConfigurationSection profileSection = section.getConfigurationSection(key);
+        if (profileSection == null) {
+            errors.add("Unknown profile: " + key);
+            return null;
+        }
+        if (!visiting.add(key)) {
+            errors.add("Profile inherits itself: " + key);
+            return null;
+        }
+        Profile parent = null;
+        String parentName = profileSection.getString("Inherit");
+        if (parentName != null) {
+            parent = parseProfile(section, parentName, result, visiting, errors);
+            if (parent == null) return null;
+        }
+        profile = new Profile(key, parse("profiles." + key, profileSection, errors), parent);
+        result.put(key, profile);
+        return profile;
+    }
+
+    private MyWorld parse(String name, ConfigurationSection config, List<String> errors) {
+        MyWorld myWorld = new MyWorld(plugin, name);
+        myWorld.configure(config, errors);
+        return myWorld;
+    }
+
+    private MyWorld parseFile(File file, List<String> errors) throws IOException, InvalidConfigurationException {
+        YamlConfiguration yml = new YamlConfiguration();
+        yml.load(file);
+        String fileName = file.getName();
+        return parse(fileName.substring(0, fileName.length() - SUFFIX.length()), yml, errors);
+    }
+
+    private void parseFiles(int threads, Map<String, MyWorld> result, List<String> errors) {
+        File[] files = getFolder().listFiles((dir, fileName) -> fileName.endsWith(SUFFIX));
+        if (files == null || files.length == 0) return;
+        Arrays.sort(files);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.length), runnable -> {
+                Thread thread = new Thread(runnable, "Worlds-Parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+        try {
+            List<Future<MyWorld>> futures = new ArrayList<>(files.length);
+            // One error list per file, merged in order
+            List<List<String>> fileErrors = new ArrayList<>(files.length);
+            for (File file : files) {
+                List<String> list = new ArrayList<>();
+                fileErrors.add(list);
+                futures.add(executor.submit(() -> parseFile(file, list)));
+            }
+            for (int i = 0; i < files.length; i += 1) {
+                try {
+                    MyWorld myWorld = futures.get(i).get();
+                    errors.addAll(fileErrors.get(i));
+                    result.put(myWorld.getName(), myWorld);
+                } catch (ExecutionException ee) {
+                    errors.add(files[i].getName() + ": " + ee.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            errors.add("Interrupted while parsing world files");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void save(MyWorld myWorld) {
+        saveAll(List.of(myWorld));
+    }
+
+    /**
+     * Save some worlds. In split mode, only their files are
+     * written. Otherwise, the config.yml is saved once.
+     */
+    void saveAll(Collection<MyWorld> list) {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("worlds");
+        if (!isSplit()) {
+            if (section == null) section = plugin.getConfig().createSection("worlds");
+            for (MyWorld myWorld : list) {
+                myWorld.save(section.createSection(myWorld.getName()));
+            }
+            plugin.saveConfig();
+            return;
+        }
+        getFolder().mkdirs();
+        boolean saveConfig = false;
+        for (MyWorld myWorld : list) {
+            YamlConfiguration yml = new YamlConfiguration();
+            myWorld.save(yml);
+            try {
+                yml.save(getFile(myWorld.getName()));
+            } catch (IOException ioe) {
+                plugin.getLogger().log(Level.SEVERE, "[" + myWorld.getName() + "] Saving world file", ioe);
+                continue;
+            }
+            if (section != null && section.contains(myWorld.getName())) {
+                section.set(myWorld.getName(), null);
+                saveConfig = true;
+            }
+        }
+        if (saveConfig) plugin.saveConfig();
+    }
+}
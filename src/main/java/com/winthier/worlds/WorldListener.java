@@ -0,0 +1,116 @@
+package com.winthier.worlds;
+
+import lombok.RequiredArgsConstructor;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+@RequiredArgsConstructor
+final class WorldListener implements Listener {
+    final WorldsPlugin plugin;
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        plugin.getHibernator().wake(event.getWorld());
+        plugin.getChunkTickets().clear(event.getWorld());
+        plugin.getSafeSpawns().clear(event.getWorld());
+        plugin.getEntityLimiter().clear(event.getWorld());
+        plugin.getLeakDetector().track(event.getWorld());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            plugin.getSafeSpawns().onBlockChange(block);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            plugin.getSafeSpawns().onBlockChange(block);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getToBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPistonExtend(BlockPistonExtendEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock().getRelative(event.getDirection()));
+        for (Block block : event.getBlocks()) {
+            plugin.getSafeSpawns().onBlockChange(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPistonRetract(BlockPistonRetractEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock().getRelative(event.getDirection()));
+        for (Block block : event.getBlocks()) {
+            plugin.getSafeSpawns().onBlockChange(block);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockForm(BlockFormEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockFade(BlockFadeEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBurn(BlockBurnEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockIgnite(BlockIgniteEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        plugin.getSafeSpawns().onBlockChange(event.getBlock());
+    }
+}
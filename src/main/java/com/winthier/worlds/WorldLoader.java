@@ -0,0 +1,125 @@
+package com.winthier.worlds;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Queue of world load and unload requests. Requests for the same
+ * world are merged, and at most one request is executed per tick so
+ * that concurrent callers do not stack several world loads into the
+ * same tick. All futures complete on the main thread.
+ *
+ * Creating the world itself is synchronous in Bukkit and still
+ * stalls the tick in which it is executed. Only the spawn chunk is
+ * then loaded asynchronously, before the future completes, so that
+ * callers which teleport there right away do not load it on the
+ * main thread.
+ */
+@RequiredArgsConstructor
+final class WorldLoader {
+    private final WorldsPlugin plugin;
+    private final Map<String, CompletableFuture<World>> loads = new HashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> unloads = new HashMap<>();
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private BukkitTask task;
+
+    CompletableFuture<World> load(String name) {
+        CompletableFuture<World> future = loads.get(name);
+        if (future != null) return future;
+        final CompletableFuture<World> newFuture = new CompletableFuture<>();
+        loads.put(name, newFuture);
+        enqueue(() -> {
+                loads.remove(name);
+                final World world;
+                try {
+                    world = executeLoad(name);
+                } catch (RuntimeException re) {
+                    newFuture.completeExceptionally(re);
+                    return;
+                }
+                // The world is loaded either way
+                world.getChunkAtAsync(world.getSpawnLocation())
+                    .whenComplete((chunk, throwable) -> newFuture.complete(world));
+            });
+        return newFuture;
+    }
+
+    CompletableFuture<Boolean> unload(String name) {
+        CompletableFuture<Boolean> future = unloads.get(name);
+        if (future != null) return future;
+        final CompletableFuture<Boolean> newFuture = new CompletableFuture<>();
+        unloads.put(name, newFuture);
+        enqueue(() -> {
+                unloads.remove(name);
+                complete(newFuture, () -> executeUnload(name));
+            });
+        return newFuture;
+    }
+
+    private void enqueue(Runnable runnable) {
+        queue.add(runnable);
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 0L, 1L);
+        }
+    }
+
+    private void tick() {
+        Runnable runnable = queue.poll();
+        if (runnable == null) {
+            task.cancel();
+            task = null;
+            return;
+        }
+        runnable.run();
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> supplier) {
+        try {
+            future.complete(supplier.get());
+        } catch (RuntimeException re) {
+            future.completeExceptionally(re);
+        }
+    }
+
+    private World executeLoad(String name) {
+        World world = plugin.getServer().getWorld(name);
+        if (world != null) return world;
+        MyWorld myWorld = plugin.worldByName(name);
+        if (myWorld == null) {
+            throw new IllegalArgumentException("World not configured: " + name);
+        }
+        world = myWorld.loadWorld();
+        if (world == null) {
+            throw new IllegalStateException("Could not load world: " + name);
+        }
+        return world;
+    }
+
+    private boolean executeUnload(String name) {
+        World world = plugin.getServer().getWorld(name);
+        if (world == null) return true;
+        return plugin.getServer().unloadWorld(world, true);
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (CompletableFuture<World> future : loads.values()) {
+            future.cancel(false);
+        }
+        for (CompletableFuture<Boolean> future : unloads.values()) {
+            future.cancel(false);
+        }
+        queue.clear();
+        loads.clear();
+        unloads.clear();
+    }
+}
@@ -0,0 +1,93 @@
+package com.winthier.worlds;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Register one WorldStats MBean per configured world and refresh
+ * their snapshots on the main thread at a fixed interval. Beans are
+ * added and removed as the configuration changes.
+ */
+@RequiredArgsConstructor
+final class WorldMonitor {
+    private static final String DOMAIN = "com.winthier.worlds";
+    private final WorldsPlugin plugin;
+    private final Map<String, WorldStats> statsMap = new HashMap<>();
+    private MBeanServer server;
+    private BukkitTask task;
+
+    void enable() {
+        if (!plugin.getConfig().getBoolean("jmx.Enabled", true)) return;
+        long interval = Math.max(1L, plugin.getConfig().getLong("jmx.SampleInterval", 100L));
+        server = ManagementFactory.getPlatformMBeanServer();
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::sample, 0L, interval);
+    }
+
+    void disable() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (String name : statsMap.keySet()) {
+            unregister(name);
+        }
+        statsMap.clear();
+        server = null;
+    }
+
+    private void sample() {
+        Set<String> names = new HashSet<>();
+        for (MyWorld myWorld : plugin.getWorlds()) {
+            names.add(myWorld.getName());
+            statsMap.computeIfAbsent(myWorld.getName(), this::register).sample(myWorld.getWorld());
+        }
+        for (Iterator<String> iter = statsMap.keySet().iterator(); iter.hasNext();) {
+            String name = iter.next();
+            if (names.contains(name)) continue;
+            unregister(name);
+            iter.remove();
+        }
+    }
+
+    void recordLoad(String name, long nanos) {
+        if (server == null) return;
+        statsMap.computeIfAbsent(name, this::register).setLastLoadMillis(nanos / 1_000_000L);
+    }
+
+    void recordApply(String name, long nanos) {
+        if (server == null) return;
+        statsMap.computeIfAbsent(name, this::register).setLastApplyMillis(nanos / 1_000_000L);
+    }
+
+    private WorldStats register(String name) {
+        WorldStats stats = new WorldStats(name);
+        try {
+            server.registerMBean(stats, objectName(name));
+        } catch (JMException jme) {
+            plugin.getLogger().log(Level.WARNING, "[" + name + "] Register MBean", jme);
+        }
+        return stats;
+    }
+
+    private void unregister(String name) {
+        try {
+            server.unregisterMBean(objectName(name));
+        } catch (JMException jme) {
+            plugin.getLogger().log(Level.WARNING, "[" + name + "] Unregister MBean", jme);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=World,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,27 @@
+package com.winthier.worlds;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Called after a configured world was loaded by this plugin and its
+ * settings were applied.
+ */
+@Getter @RequiredArgsConstructor
+public final class WorldReadyEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+    private final MyWorld myWorld;
+    private final World world;
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+}
@@ -0,0 +1,113 @@
+package com.winthier.worlds;
+
+import lombok.Value;
+import org.bukkit.World;
+
+/**
+ * The MBean of one configured world. The snapshot is replaced as a
+ * whole by the main thread so readers always see a consistent set
+ * of values and never touch the Bukkit API.
+ */
+public final class WorldStats implements WorldStatsMBean {
+    private final String name;
+    private volatile Snapshot snapshot = Snapshot.UNLOADED;
+    private volatile long lastLoadMillis = -1L;
+    private volatile long lastApplyMillis = -1L;
+
+    @Value
+    static final class Snapshot {
+        static final Snapshot UNLOADED = new Snapshot(false, 0, 0, 0, 0, 0, 0, 0L);
+        private boolean loaded;
+        private int loadedChunkCount;
+        private int entityCount;
+        private int tileEntityCount;
+        private int playerCount;
+        private int viewDistance;
+        private int simulationDistance;
+        private long sampleTime;
+
+        static Snapshot of(World world) {
+            return new Snapshot(true,
+                                world.getChunkCount(),
+                                world.getEntityCount(),
+                                world.getTileEntityCount(),
+                                world.getPlayerCount(),
+                                world.getViewDistance(),
+                                world.getSimulationDistance(),
+                                System.currentTimeMillis());
+        }
+    }
+
+    WorldStats(final String name) {
+        this.name = name;
+    }
+
+    void sample(World world) {
+        snapshot = world != null
+            ? Snapshot.of(world)
+            : Snapshot.UNLOADED;
+    }
+
+    void setLastLoadMillis(long millis) {
+        this.lastLoadMillis = millis;
+    }
+
+    void setLastApplyMillis(long millis) {
+        this.lastApplyMillis = millis;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return snapshot.isLoaded();
+    }
+
+    @Override
+    public int getLoadedChunkCount() {
+        return snapshot.getLoadedChunkCount();
+    }
+
+    @Override
+    public int getEntityCount() {
+        return snapshot.getEntityCount();
+    }
+
+    @Override
+    public int getTileEntityCount() {
+        return snapshot.getTileEntityCount();
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return snapshot.getPlayerCount();
+    }
+
+    @Override
+    public int getViewDistance() {
+        return snapshot.getViewDistance();
+    }
+
+    @Override
+    public int getSimulationDistance() {
+        return snapshot.getSimulationDistance();
+    }
+
+    @Override
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    @Override
+    public long getLastApplyMillis() {
+        return lastApplyMillis;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return snapshot.getSampleTime();
+    }
+}
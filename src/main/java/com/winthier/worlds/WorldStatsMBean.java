@@ -0,0 +1,29 @@
+package com.winthier.worlds;
+
+/**
+ * JMX view of one configured world. All values are read from a
+ * snapshot which is sampled on the main thread, see WorldMonitor.
+ */
+public interface WorldStatsMBean {
+    String getName();
+
+    boolean isLoaded();
+
+    int getLoadedChunkCount();
+
+    int getEntityCount();
+
+    int getTileEntityCount();
+
+    int getPlayerCount();
+
+    int getViewDistance();
+
+    int getSimulationDistance();
+
+    long getLastLoadMillis();
+
+    long getLastApplyMillis();
+
+    long getSampleTime();
+}
@@ -2,10 +2,12 @@ package com.winthier.worlds;
 
 import com.cavetale.core.command.AbstractCommand;
 import com.cavetale.core.command.CommandArgCompleter;
+import com.cavetale.core.command.CommandNode;
 import com.cavetale.core.command.CommandWarn;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -62,6 +64,35 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
             .description("Unload Bukkit world")
             .completers(CommandArgCompleter.supplyList(this::listLoadedWorlds))
             .senderCaller(this::unload);
+        rootNode.addChild("backup").arguments("<world|*>")
+            .description("Back up world")
+            .completers(CommandArgCompleter.supplyList(this::listLoadedWorlds))
+            .senderCaller(this::backup);
+        rootNode.addChild("hotspots").arguments("<world> [seconds]")
+            .description("Find chunks with many entities")
+            .completers(CommandArgCompleter.supplyList(this::listLoadedWorlds),
+                        CommandArgCompleter.list(List.of("10", "30", "60")))
+            .senderCaller(this::hotspots);
+        rootNode.addChild("leaks").denyTabCompletion()
+            .description("List unloaded worlds not yet collected")
+            .senderCaller(this::leaks);
+        rootNode.addChild("recompress").arguments("<world> <codec> [level]")
+            .description("Recompress region files of unloaded world")
+            .completers(CommandArgCompleter.supplyList(this::listWorldFolders),
+                        CommandArgCompleter.enumLowerList(RegionRecompressor.Codec.class),
+                        CommandArgCompleter.list(List.of("1", "6", "9")))
+            .senderCaller(this::recompress);
+        rootNode.addChild("compact").denyTabCompletion()
+            .description("Remove default game rules from config")
+            .senderCaller(this::compact);
+        CommandNode benchNode = rootNode.addChild("bench")
+            .description("Benchmarks");
+        benchNode.addChild("gen").arguments("<generator> [environment] [chunks]")
+            .description("Chunk generation benchmark")
+            .completers(CommandArgCompleter.list(List.of("vanilla", "VoidGenerator")),
+                        CommandArgCompleter.enumLowerList(World.Environment.class),
+                        CommandArgCompleter.list(List.of("256", "1024")))
+            .senderCaller(this::benchGen);
     }
 
     private List<String> listWorldFolders() {
@@ -103,10 +134,18 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
         if (plugin.getServer().getWorld(name) != null) {
             throw new CommandWarn("World already loaded: " + name);
         }
+        if (plugin.getRegionRecompressor().isRunning(name)) {
+            throw new CommandWarn("World is being recompressed: " + name);
+        }
         MyWorld myWorld = plugin.worldByName(name);
         if (myWorld != null) {
-            World world = myWorld.loadWorld();
-            sender.sendMessage(text("World loaded: " + world.getName(), YELLOW));
+            plugin.loadWorld(name).whenComplete((world, throwable) -> {
+                    if (throwable != null) {
+                        sender.sendMessage(text("Could not load world " + name + ": " + throwable.getMessage(), RED));
+                    } else {
+                        sender.sendMessage(text("World loaded: " + world.getName(), YELLOW));
+                    }
+                });
         } else {
             final WorldCreator creator = WorldCreator.name(name);
             final World.Environment env = args.length >= 2
@@ -139,10 +178,20 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
     }
 
     private void reload(CommandSender sender) {
-        plugin.reloadConfig();
-        plugin.reloadWorlds();
-        plugin.loadAllWorlds();
-        sender.sendMessage(text("Worlds configurations reloaded", YELLOW));
+        boolean started = plugin.reloadAsync(errors -> {
+                if (!errors.isEmpty()) {
+                    sender.sendMessage(text("Reload failed, keeping old configuration:", RED));
+                    for (String error : errors) {
+                        sender.sendMessage(text(" " + error, RED));
+                    }
+                    return;
+                }
+                sender.sendMessage(text("Worlds configurations reloaded", YELLOW));
+            });
+        if (!started) {
+            throw new CommandWarn("Reload already in progress");
+        }
+        sender.sendMessage(text("Reloading worlds configurations...", YELLOW));
     }
 
     private void apply(CommandSender sender) {
@@ -161,16 +210,15 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
         if (args.length < 1 || args.length > 2) return false;
         String name = args[0];
         if (name.equals("*")) {
-            int count = 0;
+            List<MyWorld> imported = new ArrayList<>();
             for (World world: plugin.getServer().getWorlds()) {
                 MyWorld myWorld = plugin.worldOf(world);
-                if (myWorld == null) myWorld = new MyWorld(plugin, name);
+                if (myWorld == null) myWorld = new MyWorld(plugin, world.getName());
                 myWorld.configure(world);
-                myWorld.save();
-                count += 1;
+                imported.add(myWorld);
             }
-            plugin.saveConfig();
-            sender.sendMessage(text("Imported " + count + " worlds", YELLOW));
+            plugin.getWorldFiles().saveAll(imported);
+            sender.sendMessage(text("Imported " + imported.size() + " worlds", YELLOW));
         } else {
             final String generator = args.length >= 2
                 ? args[1]
@@ -185,7 +233,6 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
             myWorld.configure(world);
             if (generator != null) myWorld.setGenerator(generator);
             myWorld.save();
-            plugin.saveConfig();
             sender.sendMessage(text("Imported world " + name, YELLOW));
         }
         return true;
@@ -208,9 +255,9 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
         World world = player.getWorld();
         MyWorld myWorld = plugin.worldByName(world.getName());
         if (myWorld == null) {
-            player.teleport(world.getSpawnLocation());
+            player.teleport(plugin.getSafeSpawns().get(world, world.getSpawnLocation()));
         } else {
-            player.teleport(myWorld.getSpawnLocation());
+            player.teleport(myWorld.getSafeSpawnLocation());
         }
         player.sendMessage(text("Teleported to world spawn", YELLOW));
     }
@@ -224,7 +271,6 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
         } else {
             myWorld.setSpawnLocation(loc);
             myWorld.save();
-            plugin.saveConfig();
         }
         player.sendMessage(text(String.format("World spawn set to %.02f %.02f %.02f",
                                               loc.getX(), loc.getY(), loc.getZ()), YELLOW));
@@ -237,10 +283,190 @@ final class WorldsCommand extends AbstractCommand<WorldsPlugin> {
         if (world == null) {
             throw new CommandWarn("World not found: " + name);
         }
-        if (!plugin.getServer().unloadWorld(world, true)) {
-            throw new CommandWarn("Could not unload world " + world.getName());
+        plugin.unloadWorld(world.getName()).thenAccept(success -> {
+                if (success) {
+                    sender.sendMessage(text("Unloaded world " + name, YELLOW));
+                } else {
+                    sender.sendMessage(text("Could not unload world " + name, RED));
+                }
+            });
+        return true;
+    }
+
+    private boolean backup(CommandSender sender, String[] args) {
+        if (args.length != 1) return false;
+        final List<World> worldList;
+        if (args[0].equals("*")) {
+            worldList = plugin.getServer().getWorlds();
+        } else {
+            World world = plugin.getServer().getWorld(args[0]);
+            if (world == null) {
+                throw new CommandWarn("World not found: " + args[0]);
+            }
+            worldList = List.of(world);
+        }
+        for (World world : worldList) {
+            final String name = world.getName();
+            boolean started = plugin.getWorldBackup().backup(world, result -> {
+                    if (result == null) {
+                        sender.sendMessage(text("Backup of " + name + " failed. See console.", RED));
+                        return;
+                    }
+                    sender.sendMessage(text("Backup of " + name + " done: " + result.getSnapshot()
+                                            + ", copied " + result.getCopied()
+                                            + " (" + (result.getBytesCopied() / 1024L) + " KiB)"
+                                            + ", linked " + result.getLinked()
+                                            + ", pruned " + result.getPruned()
+                                            + " in " + result.getMillis() + "ms", YELLOW));
+                });
+            if (started) {
+                sender.sendMessage(text("Backing up world " + name + "...", YELLOW));
+            } else {
+                sender.sendMessage(text("Backup of " + name + " already running", RED));
+            }
         }
-        sender.sendMessage(text("Unloaded world " + world.getName(), YELLOW));
         return true;
     }
+
+    private boolean benchGen(CommandSender sender, String[] args) {
+        if (args.length < 1 || args.length > 3) return false;
+        final String generator = args[0].equals("vanilla")
+            ? null
+            : args[0];
+        final World.Environment env = args.length >= 2
+            ? CommandArgCompleter.requireEnum(World.Environment.class, args[1])
+            : World.Environment.NORMAL;
+        int chunks = 256;
+        if (args.length >= 3) {
+            try {
+                chunks = Integer.parseInt(args[2]);
+            } catch (NumberFormatException nfe) {
+                throw new CommandWarn("Invalid chunk count: " + args[2]);
+            }
+            if (chunks < 1 || chunks > GeneratorBench.MAX_CHUNKS) {
+                throw new CommandWarn("Chunk count must be between 1 and " + GeneratorBench.MAX_CHUNKS + ": " + args[2]);
+            }
+        }
+        if (plugin.getGeneratorBench().isRunning()) {
+            throw new CommandWarn("Benchmark already running");
+        }
+        if (!plugin.getGeneratorBench().start(sender, generator, env, chunks)) {
+            throw new CommandWarn("Could not create benchmark world");
+        }
+        sender.sendMessage(text("Generating " + chunks + " chunks with " + args[0] + "...", YELLOW));
+        return true;
+    }
+
+    private boolean hotspots(CommandSender sender, String[] args) {
+        if (args.length < 1 || args.length > 2) return false;
+        World world = plugin.getServer().getWorld(args[0]);
+        if (world == null) {
+            throw new CommandWarn("World not loaded: " + args[0]);
+        }
+        int seconds = 30;
+        if (args.length >= 2) {
+            try {
+                seconds = Integer.parseInt(args[1]);
+            } catch (NumberFormatException nfe) {
+                throw new CommandWarn("Invalid seconds: " + args[1]);
+            }
+            if (seconds < 1 || seconds > 600) {
+                throw new CommandWarn("Invalid seconds: " + args[1]);
+            }
+        }
+        if (!plugin.getHotspotSampler().start(sender, world, seconds)) {
+            throw new CommandWarn("Already sampling " + world.getName());
+        }
+        sender.sendMessage(text("Sampling hotspots in " + world.getName() + " for " + seconds + "s", YELLOW));
+        return true;
+    }
+
+    private void leaks(CommandSender sender) {
+        List<LeakDetector.Unloaded> list = plugin.getLeakDetector().getUnloaded();
+        if (list.isEmpty()) {
+            sender.sendMessage(text("All unloaded worlds were collected", YELLOW));
+            return;
+        }
+        int suspects = 0;
+        for (LeakDetector.Unloaded it : list) {
+            if (it.isSuspect()) {
+                suspects += 1;
+                sender.sendMessage(textOfChildren(text(" " + it.getName(), RED),
+                                                  text(" (leaked, unloaded " + it.getMinutes() + "m ago)", GRAY)));
+            } else {
+                sender.sendMessage(textOfChildren(text(" " + it.getName(), YELLOW),
+                                                  text(" (pending, unloaded " + it.getMinutes() + "m ago)", GRAY)));
+            }
+        }
+        sender.sendMessage(text(list.size() + " unloaded worlds not collected, " + suspects + " suspected leaks", AQUA));
+    }
+
+    private boolean recompress(CommandSender sender, String[] args) {
+        if (args.length < 2 || args.length > 3) return false;
+        final String name = args[0];
+        if (plugin.getServer().getWorld(name) != null) {
+            throw new CommandWarn("World must be unloaded: " + name);
+        }
+        File folder = new File(Bukkit.getWorldContainer(), name);
+        if (!folder.isDirectory()) {
+            throw new CommandWarn("World folder not found: " + name);
+        }
+        final RegionRecompressor.Codec codec = RegionRecompressor.Codec.of(args[1]);
+        if (codec == null) {
+            throw new CommandWarn("Unsupported codec: " + args[1]);
+        }
+        int level = Deflater.BEST_COMPRESSION;
+        if (args.length >= 3) {
+            try {
+                level = Integer.parseInt(args[2]);
+            } catch (NumberFormatException nfe) {
+                throw new CommandWarn("Invalid level: " + args[2]);
+            }
+            if (level < 0 || level > 9) {
+                throw new CommandWarn("Invalid level: " + args[2]);
+            }
+        }
+        final String codecName = codec.name().toLowerCase();
+        boolean started = plugin.getRegionRecompressor().recompress(name, folder.toPath(), codec, level, result -> {
+                if (result == null) {
+                    sender.sendMessage(text("Recompressing " + name + " failed. See console.", RED));
+                    return;
+                }
+                double seconds = Math.max(1L, result.getMillis()) / 1000.0;
+                sender.sendMessage(text("Recompressed " + name + " to " + codecName + ": "
+                                        + result.getFiles() + " files"
+                                        + (result.getFailed() > 0 ? " (" + result.getFailed() + " failed)" : "")
+                                        + ", " + result.getChunks() + " chunks"
+                                        + (result.getKept() > 0 ? " (" + result.getKept() + " kept)" : ""),
+                                        result.getFailed() > 0 ? RED : YELLOW));
+                sender.sendMessage(text(String.format("%d KiB -> %d KiB in %.1fs, %.1f MiB/s",
+                                                      result.getSizeBefore() >> 10,
+                                                      result.getSizeAfter() >> 10,
+                                                      seconds,
+                                                      (double) result.getSizeBefore() / (1024.0 * 1024.0) / seconds), YELLOW));
+            });
+        if (!started) {
+            throw new CommandWarn("Already recompressing " + name);
+        }
+        sender.sendMessage(text("Recompressing " + name + " to " + codecName + "...", YELLOW));
+        return true;
+    }
+
+    private void compact(CommandSender sender) {
+        List<World> loaded = plugin.getServer().getWorlds();
+        if (loaded.isEmpty()) {
+            throw new CommandWarn("No world loaded");
+        }
+        List<MyWorld> changed = new ArrayList<>();
+        int count = 0;
+        for (MyWorld myWorld : plugin.getWorlds()) {
+            World world = myWorld.getWorld();
+            int removed = myWorld.compactGameRules(world != null ? world : loaded.get(0));
+            if (removed == 0) continue;
+            count += removed;
+            changed.add(myWorld);
+        }
+        if (!changed.isEmpty()) plugin.getWorldFiles().saveAll(changed);
+        sender.sendMessage(text("Removed " + count + " default game rules from " + changed.size() + " worlds", YELLOW));
+    }
 }
@@ -1,20 +1,68 @@
 package com.winthier.worlds;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
 public final class WorldsPlugin extends JavaPlugin {
     private List<MyWorld> worlds = null;
+    private Map<String, MyWorld> worldNames = Map.of();
+    private FileConfiguration config = null;
+    private boolean reloading = false;
+    private final WorldBackup worldBackup = new WorldBackup(this);
+    private final WorldMonitor worldMonitor = new WorldMonitor(this);
+    private final ChunkTickets chunkTickets = new ChunkTickets(this);
+    private final WorldFiles worldFiles = new WorldFiles(this);
+    private final SafeSpawns safeSpawns = new SafeSpawns(this);
+    private final TeleportQueue teleportQueue = new TeleportQueue(this);
+    private final WorldLoader worldLoader = new WorldLoader(this);
+    private final Prewarmer prewarmer = new Prewarmer(this);
+    private final Hibernator hibernator = new Hibernator(this);
+    private final GeneratorBench generatorBench = new GeneratorBench(this);
+    private final EntityLimiter entityLimiter = new EntityLimiter(this);
+    private final HotspotSampler hotspotSampler = new HotspotSampler(this);
+    private final LeakDetector leakDetector = new LeakDetector(this);
+    private final RegionRecompressor regionRecompressor = new RegionRecompressor(this);
+
+    public WorldsPlugin() { }
+
+    /**
+     * Constructor for the scale tests, which run outside of a plugin
+     * class loader and against a stand-in server.
+     */
+    @SuppressWarnings({"deprecation", "removal"})
+    WorldsPlugin(final JavaPluginLoader loader, final PluginDescriptionFile description,
+                 final File dataFolder, final File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
         reloadConfig();
+        worldMonitor.enable();
         new WorldsCommand(this).enable();
         new WTPCommand(this).enable();
+        // Before applying, so worlds left asleep by a crash are
+        // woken up
+        hibernator.enable();
         // Apply settings to default worlds (and other previously
         // loaded ones)
         for (World world: getServer().getWorlds()) {
@@ -22,36 +70,133 @@ public final class WorldsPlugin extends JavaPlugin {
             if (myWorld != null) myWorld.apply(world);
         }
         loadAllWorlds();
+        prewarmer.enable();
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+        getServer().getPluginManager().registerEvents(new WorldListener(this), this);
+        getServer().getPluginManager().registerEvents(new EntityListener(this), this);
+    }
+
+    @Override
+    public void onDisable() {
+        generatorBench.disable();
+        hotspotSampler.disable();
+        hibernator.disable();
+        prewarmer.disable();
+        worldLoader.disable();
+        worldMonitor.disable();
+        chunkTickets.disable();
+        entityLimiter.disable();
+        leakDetector.disable();
+        regionRecompressor.disable();
     }
 
     @Override
-    public void onDisable() { }
+    public FileConfiguration getConfig() {
+        if (config == null) reloadConfig();
+        return config;
+    }
+
+    @Override
+    public void reloadConfig() {
+        try {
+            config = readConfig();
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().log(Level.SEVERE, "Loading config.yml", e);
+            if (config == null) config = new YamlConfiguration();
+        }
+    }
+
+    /**
+     * Read the config.yml along with its defaults. This does not
+     * change any plugin state and may be called from any thread.
+     */
+    private YamlConfiguration readConfig() throws IOException, InvalidConfigurationException {
+        YamlConfiguration result = new YamlConfiguration();
+        File file = new File(getDataFolder(), "config.yml");
+        if (file.exists()) result.load(file);
+        InputStream in = getResource("config.yml");
+        if (in != null) {
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                result.setDefaults(YamlConfiguration.loadConfiguration(reader));
+            }
+        }
+        return result;
+    }
 
     List<MyWorld> getWorlds() {
         if (worlds == null) {
-            boolean shouldSave = false;
-            worlds = new ArrayList<>();
-            ConfigurationSection config = getConfig().getConfigurationSection("worlds");
-            for (String key: config.getKeys(false)) {
-                MyWorld myWorld = new MyWorld(this, key);
-                myWorld.configure(config.getConfigurationSection(key));
-                if (myWorld.isDidConvert()) {
-                    myWorld.save();
-                    shouldSave = true;
-                }
-                worlds.add(myWorld);
-            }
-            if (shouldSave) {
-                getLogger().info("Saving due to conversion");
-                saveConfig();
+            WorldFiles.Parsed parsed = worldFiles.parse(getConfig());
+            for (String error : parsed.getErrors()) {
+                getLogger().severe(error);
             }
+            setWorlds(parsed.getWorlds());
         }
         return worlds;
     }
 
-    void reloadWorlds() {
-        worlds = null;
+    private void setWorlds(List<MyWorld> list) {
+        worlds = list;
+        Map<String, MyWorld> names = new HashMap<>(list.size() * 2);
+        for (MyWorld myWorld : list) {
+            names.putIfAbsent(myWorld.getName(), myWorld);
+        }
+        worldNames = names;
+        List<MyWorld> converted = new ArrayList<>();
+        for (MyWorld myWorld : worlds) {
+            if (myWorld.isDidConvert()) converted.add(myWorld);
+        }
+        if (!converted.isEmpty()) {
+            getLogger().info("Saving due to conversion");
+            worldFiles.saveAll(converted);
+        }
+    }
+
+    /**
+     * Read and parse the configuration in the background, then swap
+     * it in on the main thread, load new AutoLoad worlds and update
+     * the KeepLoaded chunks, releasing those of worlds which were
+     * removed. If anything fails to parse, the old
+     * configuration stays active. The callback receives the errors,
+     * which are empty on success.
+     * @return false if a reload is already in progress
+     */
+    boolean reloadAsync(Consumer<List<String>> callback) {
+        if (reloading) return false;
+        reloading = true;
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+                FileConfiguration newConfig = null;
+                WorldFiles.Parsed parsed = null;
+                List<String> errors;
+                try {
+                    newConfig = readConfig();
+                    parsed = worldFiles.parse(newConfig);
+                    errors = parsed.getErrors();
+                } catch (IOException | InvalidConfigurationException e) {
+                    errors = List.of("config.yml: " + e.getMessage());
+                } catch (RuntimeException re) {
+                    // Anything else must not leave reloading stuck
+                    getLogger().log(Level.SEVERE, "Reloading config", re);
+                    errors = List.of("Unexpected error: " + re + ". See console.");
+                }
+                final FileConfiguration finalConfig = newConfig;
+                final WorldFiles.Parsed finalParsed = parsed;
+                final List<String> finalErrors = errors;
+                getServer().getScheduler().runTask(this, () -> {
+                        reloading = false;
+                        if (finalErrors.isEmpty()) {
+                            config = finalConfig;
+                            setWorlds(finalParsed.getWorlds());
+                            loadAllWorlds();
+                            for (MyWorld myWorld : worlds) {
+                                World world = myWorld.getWorld();
+                                if (world != null) myWorld.applyKeepLoaded(world);
+                            }
+                            chunkTickets.retain(worldNames.keySet());
+                        }
+                        callback.accept(finalErrors);
+                    });
+            });
+        return true;
     }
 
     void loadAllWorlds() {
@@ -63,16 +208,100 @@ public final class WorldsPlugin extends JavaPlugin {
         }
     }
 
+    /**
+     * Find a configured world by its exact name. This is called for
+     * every player join and world change, so it uses an index which
+     * is rebuilt whenever the world list is replaced.
+     */
     public MyWorld worldByName(String name) {
-        for (MyWorld myWorld : getWorlds()) {
-            if (name.equals(myWorld.getName())) {
-                return myWorld;
-            }
-        }
-        return null;
+        getWorlds();
+        return worldNames.get(name);
     }
 
     public MyWorld worldOf(World world) {
         return worldByName(world.getName());
     }
+
+    /**
+     * Load a configured world. Requests for the same world are
+     * merged and executed one per tick. The future completes on the
+     * main thread, after the settings were applied and the spawn
+     * chunk was loaded asynchronously, or exceptionally if the world
+     * is not configured or could not be loaded. This may be called
+     * from any thread. Note that creating the world is synchronous in
+     * Bukkit, so the tick which executes the request still stalls for
+     * as long as that takes.
+     */
+    public CompletableFuture<World> loadWorld(String name) {
+        if (!getServer().isPrimaryThread()) {
+            return CompletableFuture.supplyAsync(() -> loadWorld(name), getServer().getScheduler().getMainThreadExecutor(this))
+                .thenCompose(future -> future);
+        }
+        return worldLoader.load(name);
+    }
+
+    /**
+     * Save and unload a world. The future completes on the main
+     * thread with the result of the unload, or true if the world was
+     * not loaded. This may be called from any thread.
+     */
+    public CompletableFuture<Boolean> unloadWorld(String name) {
+        if (!getServer().isPrimaryThread()) {
+            return CompletableFuture.supplyAsync(() -> unloadWorld(name), getServer().getScheduler().getMainThreadExecutor(this))
+                .thenCompose(future -> future);
+        }
+        return worldLoader.unload(name);
+    }
+
+    WorldBackup getWorldBackup() {
+        return worldBackup;
+    }
+
+    WorldMonitor getWorldMonitor() {
+        return worldMonitor;
+    }
+
+    ChunkTickets getChunkTickets() {
+        return chunkTickets;
+    }
+
+    WorldFiles getWorldFiles() {
+        return worldFiles;
+    }
+
+    SafeSpawns getSafeSpawns() {
+        return safeSpawns;
+    }
+
+    public TeleportQueue getTeleportQueue() {
+        return teleportQueue;
+    }
+
+    Prewarmer getPrewarmer() {
+        return prewarmer;
+    }
+
+    Hibernator getHibernator() {
+        return hibernator;
+    }
+
+    GeneratorBench getGeneratorBench() {
+        return generatorBench;
+    }
+
+    EntityLimiter getEntityLimiter() {
+        return entityLimiter;
+    }
+
+    HotspotSampler getHotspotSampler() {
+        return hotspotSampler;
+    }
+
+    LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    RegionRecompressor getRegionRecompressor() {
+        return regionRecompressor;
+    }
 }
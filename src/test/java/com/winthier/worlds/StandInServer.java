@@ -0,0 +1,498 @@
+package com.winthier.worlds;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.GameRule;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * An in-process stand-in for the Bukkit server, complete enough to
+ * load, apply, import and reload worlds. Server, World and the
+ * scheduler are dynamic proxies. Methods without a behavior of their
+ * own return empty values, or a stub for interface types.
+ *
+ * Main thread tasks only run when the test calls tick(), on the
+ * thread which called reset(). Async tasks run on a thread pool.
+ *
+ * createWorld and setGameRule are slowed down by the latencies in
+ * microseconds given via the system properties
+ * worlds.scale.createWorldMicros and worlds.scale.setGameRuleMicros.
+ * Saving the config is not part of the server, so its cost is that
+ * of the actual file write.
+ */
+final class StandInServer {
+    private static final Object DEFAULT = new Object();
+    private static StandInServer instance;
+    private final Logger logger = Logger.getLogger("StandInServer");
+    private final Map<Class<?>, Object> stubs = new ConcurrentHashMap<>();
+    private final Map<String, WorldHandler> worlds = new LinkedHashMap<>();
+    private final Scheduler scheduler = new Scheduler();
+    private final Server server;
+    private final BukkitScheduler bukkitScheduler;
+    private volatile Thread mainThread;
+    private File worldContainer;
+    final long createWorldMicros = Long.getLong("worlds.scale.createWorldMicros", 200L);
+    final long setGameRuleMicros = Long.getLong("worlds.scale.setGameRuleMicros", 5L);
+    final AtomicLong createWorldCalls = new AtomicLong();
+    final AtomicLong setGameRuleCalls = new AtomicLong();
+
+    private StandInServer() {
+        this.server = proxy(Server.class, new ServerHandler());
+        this.bukkitScheduler = proxy(BukkitScheduler.class, scheduler);
+    }
+
+    /**
+     * Get the one stand-in, which is installed as the Bukkit server
+     * on first use. The Bukkit server cannot be replaced later.
+     */
+    static synchronized StandInServer get() {
+        if (instance != null) return instance;
+        instance = new StandInServer();
+        try {
+            Bukkit.setServer(instance.server);
+        } catch (RuntimeException | LinkageError e) {
+            // The server is set before its version is logged, which
+            // may need build information of a server implementation
+            if (Bukkit.getServer() != instance.server) throw e;
+        }
+        return instance;
+    }
+
+    /**
+     * Forget all worlds, tasks and counters. The calling thread
+     * becomes the main thread.
+     */
+    void reset(File newWorldContainer) {
+        mainThread = Thread.currentThread();
+        worldContainer = newWorldContainer;
+        synchronized (worlds) {
+            worlds.clear();
+        }
+        scheduler.clear();
+        createWorldCalls.set(0L);
+        setGameRuleCalls.set(0L);
+    }
+
+    Server getServer() {
+        return server;
+    }
+
+    int getWorldCount() {
+        synchronized (worlds) {
+            return worlds.size();
+        }
+    }
+
+    /**
+     * Set a game rule of a stand-in world directly, as if it had been
+     * changed in game, without any latency.
+     */
+    void presetGameRule(World world, GameRule<?> rule, Object value) {
+        WorldHandler handler;
+        synchronized (worlds) {
+            handler = worlds.get(world.getName());
+        }
+        handler.gameRules.put(rule, value);
+    }
+
+    /**
+     * Run one tick of main thread tasks.
+     */
+    void tick() {
+        scheduler.tick();
+    }
+
+    /**
+     * Run ticks until the condition is met, waiting for async tasks
+     * in between.
+     */
+    void runUntil(BooleanSupplier condition, long timeoutMillis) {
+        final long end = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                throw new AssertionError("Timed out after " + timeoutMillis + "ms");
+            }
+            tick();
+            if (scheduler.asyncRunning.get() > 0) LockSupport.parkNanos(50_000L);
+        }
+    }
+
+    /**
+     * Run ticks until there are no more tasks, not even timers.
+     */
+    void runUntilIdle(long timeoutMillis) {
+        runUntil(scheduler::isIdle, timeoutMillis);
+    }
+
+    private static void pause(long micros) {
+        final long end = System.nanoTime() + micros * 1000L;
+        for (long left = micros * 1000L; left > 0L; left = end - System.nanoTime()) {
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private Object stub(Class<?> type) {
+        if (type.isSealed()) return null;
+        return stubs.computeIfAbsent(type, t -> proxy(t, new Stub(t.getSimpleName())));
+    }
+
+    private Object defaultValue(Class<?> type) {
+        if (type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return '\0';
+        if (type == String.class) return "";
+        if (type.isArray()) return Array.newInstance(type.getComponentType(), 0);
+        if (type == List.class || type == Collection.class || type == Iterable.class) return List.of();
+        if (type == Set.class) return Set.of();
+        if (type == Map.class) return Map.of();
+        if (type == Optional.class) return Optional.empty();
+        if (type == CompletableFuture.class) return CompletableFuture.completedFuture(null);
+        if (type == Location.class) return new Location(null, 0.0, 0.0, 0.0);
+        if (type.isInterface()) return stub(type);
+        return null;
+    }
+
+    /**
+     * Answer the methods of Object, then those which the subclass
+     * implements, then everything else with an empty value.
+     */
+    private class Stub implements InvocationHandler {
+        private final String label;
+
+        Stub(final String label) {
+            this.label = label;
+        }
+
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return "StandIn" + label;
+                default: return null;
+                }
+            }
+            Object result = call(proxy, method, args != null ? args : new Object[0]);
+            return result == DEFAULT ? defaultValue(method.getReturnType()) : result;
+        }
+
+        protected Object call(Object proxy, Method method, Object[] args) {
+            return DEFAULT;
+        }
+    }
+
+    private final class ServerHandler extends Stub {
+        ServerHandler() {
+            super("Server");
+        }
+
+        @Override
+        protected Object call(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "getLogger": return logger;
+            case "getName": return "StandIn";
+            case "getVersion": case "getBukkitVersion": case "getMinecraftVersion": return "stand-in";
+            case "getScheduler": return bukkitScheduler;
+            case "isPrimaryThread": return Thread.currentThread() == mainThread;
+            case "getWorldContainer": return worldContainer;
+            case "getWorlds": return getWorlds();
+            case "getWorld": return args.length == 1 ? getWorld(args[0]) : DEFAULT;
+            case "createWorld": return createWorld((WorldCreator) args[0]);
+            case "unloadWorld": return unloadWorld(args[0]);
+            default: return DEFAULT;
+            }
+        }
+
+        private List<World> getWorlds() {
+            List<World> result = new ArrayList<>();
+            synchronized (worlds) {
+                for (WorldHandler it : worlds.values()) {
+                    result.add(it.world);
+                }
+            }
+            return result;
+        }
+
+        private World getWorld(Object key) {
+            synchronized (worlds) {
+                if (key instanceof String name) {
+                    WorldHandler it = worlds.get(name);
+                    return it != null ? it.world : null;
+                }
+                for (WorldHandler it : worlds.values()) {
+                    if (it.uid.equals(key) || it.name.equals(key instanceof NamespacedKey nk ? nk.getKey() : null)) {
+                        return it.world;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private World createWorld(WorldCreator creator) {
+            createWorldCalls.incrementAndGet();
+            pause(createWorldMicros);
+            synchronized (worlds) {
+                WorldHandler it = worlds.get(creator.name());
+                if (it == null) {
+                    it = new WorldHandler(creator);
+                    worlds.put(it.name, it);
+                }
+                return it.world;
+            }
+        }
+
+        private boolean unloadWorld(Object world) {
+            String name = world instanceof World w ? w.getName() : (String) world;
+            synchronized (worlds) {
+                return worlds.remove(name) != null;
+            }
+        }
+    }
+
+    private final class WorldHandler extends Stub {
+        private final String name;
+        private final UUID uid = UUID.randomUUID();
+        private final World.Environment environment;
+        private final long seed;
+        private final Map<GameRule<?>, Object> gameRules = new ConcurrentHashMap<>();
+        private final World world;
+        private Location spawn;
+        private long fullTime;
+
+        WorldHandler(final WorldCreator creator) {
+            super("World");
+            this.name = creator.name();
+            this.environment = creator.environment();
+            this.seed = creator.seed();
+            this.world = proxy(World.class, this);
+            this.spawn = new Location(world, 0.5, 64.0, 0.5);
+        }
+
+        @Override
+        protected Object call(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "getName": return name;
+            case "getUID": return uid;
+            case "getEnvironment": return environment;
+            case "getSeed": return seed;
+            case "getKey": return NamespacedKey.minecraft(name);
+            case "getWorldFolder": return new File(worldContainer, name);
+            case "getSpawnLocation": return spawn.clone();
+            case "setSpawnLocation":
+                if (args[0] instanceof Location location) {
+                    spawn = location.clone();
+                } else {
+                    spawn = new Location(world, (int) args[0], (int) args[1], (int) args[2]);
+                }
+                return true;
+            case "getFullTime": return fullTime;
+            case "setFullTime":
+                fullTime = (long) args[0];
+                return null;
+            case "getGameRuleValue":
+                return args[0] instanceof GameRule<?> rule ? gameRules.get(rule) : DEFAULT;
+            case "setGameRule":
+                if (!(args[0] instanceof GameRule<?> rule)) return DEFAULT;
+                setGameRuleCalls.incrementAndGet();
+                pause(setGameRuleMicros);
+                gameRules.put(rule, args[1]);
+                return true;
+            default: return DEFAULT;
+            }
+        }
+    }
+
+    private static final class Task {
+        private final int id;
+        private final Runnable runnable;
+        private final long period;
+        private long dueTick;
+        private volatile boolean cancelled;
+        private BukkitTask bukkitTask;
+
+        Task(final int id, final Runnable runnable, final long dueTick, final long period) {
+            this.id = id;
+            this.runnable = runnable;
+            this.dueTick = dueTick;
+            this.period = period;
+        }
+    }
+
+    /**
+     * Main thread tasks wait in a queue ordered by tick. Async tasks
+     * run right away, and the first exception any of them throws is
+     * rethrown by the next tick.
+     */
+    private final class Scheduler extends Stub {
+        private final PriorityQueue<Task> queue = new PriorityQueue<>(Comparator.<Task>comparingLong(t -> t.dueTick)
+                                                                      .thenComparingInt(t -> t.id));
+        private final ExecutorService async = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "StandIn-Async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        private final AtomicInteger asyncRunning = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private int nextId = 1;
+        private long currentTick;
+
+        Scheduler() {
+            super("Scheduler");
+        }
+
+        @Override
+        protected Object call(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "runTask": return schedule(runnable(method, args[1]), 0L, 0L).bukkitTask;
+            case "runTaskLater": return schedule(runnable(method, args[1]), (long) args[2], 0L).bukkitTask;
+            case "runTaskTimer": return schedule(runnable(method, args[1]), (long) args[2], (long) args[3]).bukkitTask;
+            case "runTaskAsynchronously": return runAsync(runnable(method, args[1]));
+            case "getMainThreadExecutor": return (Executor) command -> schedule(command, 0L, 0L);
+            case "cancelTasks":
+                clear();
+                return null;
+            default: return DEFAULT;
+            }
+        }
+
+        private Runnable runnable(Method method, Object arg) {
+            if (arg instanceof Runnable runnable) return runnable;
+            throw new UnsupportedOperationException("Not supported by the stand-in: " + method);
+        }
+
+        private Task schedule(Runnable runnable, long delay, long period) {
+            synchronized (queue) {
+                Task task = new Task(nextId++, runnable, currentTick + Math.max(1L, delay), period);
+                task.bukkitTask = proxy(BukkitTask.class, new TaskHandler(task, true));
+                queue.add(task);
+                return task;
+            }
+        }
+
+        private BukkitTask runAsync(Runnable runnable) {
+            Task task;
+            synchronized (queue) {
+                task = new Task(nextId++, runnable, currentTick, 0L);
+            }
+            task.bukkitTask = proxy(BukkitTask.class, new TaskHandler(task, false));
+            asyncRunning.incrementAndGet();
+            async.execute(() -> {
+                    try {
+                        if (!task.cancelled) runnable.run();
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        asyncRunning.decrementAndGet();
+                    }
+                });
+            return task.bukkitTask;
+        }
+
+        private void tick() {
+            Throwable t = failure.getAndSet(null);
+            if (t != null) throw new AssertionError("Async task failed", t);
+            final long tick;
+            synchronized (queue) {
+                currentTick += 1;
+                tick = currentTick;
+            }
+            while (true) {
+                Task task;
+                synchronized (queue) {
+                    task = queue.peek();
+                    if (task == null || task.dueTick > tick) break;
+                    queue.poll();
+                }
+                if (task.cancelled) continue;
+                task.runnable.run();
+                if (task.period > 0L && !task.cancelled) {
+                    synchronized (queue) {
+                        task.dueTick = tick + task.period;
+                        queue.add(task);
+                    }
+                }
+            }
+        }
+
+        private boolean isIdle() {
+            if (asyncRunning.get() > 0) return false;
+            synchronized (queue) {
+                queue.removeIf(task -> task.cancelled);
+                return queue.isEmpty();
+            }
+        }
+
+        private void clear() {
+            synchronized (queue) {
+                queue.clear();
+            }
+        }
+    }
+
+    private final class TaskHandler extends Stub {
+        private final Task task;
+        private final boolean sync;
+
+        TaskHandler(final Task task, final boolean sync) {
+            super("Task");
+            this.task = task;
+            this.sync = sync;
+        }
+
+        @Override
+        protected Object call(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "getTaskId": return task.id;
+            case "isSync": return sync;
+            case "isCancelled": return task.cancelled;
+            case "cancel":
+                task.cancelled = true;
+                return null;
+            default: return DEFAULT;
+            }
+        }
+    }
+}
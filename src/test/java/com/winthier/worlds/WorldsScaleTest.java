@@ -0,0 +1,306 @@
+package com.winthier.worlds;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.bukkit.GameRule;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scripted scenarios which run the plugin against the StandInServer
+ * with thousands of worlds, and report the time and main thread
+ * allocations of each phase. The report is printed and written to
+ * target/scale-report.txt.
+ *
+ * The number of worlds and reloads are given via the system
+ * properties worlds.scale.worlds and worlds.scale.reloads, the
+ * latencies as described in StandInServer. These tests are tagged
+ * scale and only run with the scale profile: mvn test -Pscale
+ */
+@Tag("scale")
+final class WorldsScaleTest {
+    private static final int WORLDS = Integer.getInteger("worlds.scale.worlds", 2000);
+    private static final int RELOADS = Integer.getInteger("worlds.scale.reloads", 20);
+    private static final long TIMEOUT = 60_000L;
+    private static final List<GameRule<?>> GAME_RULES = sampleGameRules();
+    private static final List<String> REPORT = new ArrayList<>();
+    private StandInServer standIn;
+    private WorldsPlugin plugin;
+    private File dataFolder;
+
+    @BeforeEach
+    void setUp(@TempDir Path tmp) {
+        standIn = StandInServer.get();
+        standIn.reset(tmp.resolve("worlds").toFile());
+        dataFolder = tmp.resolve("plugin").toFile();
+        dataFolder.mkdirs();
+        plugin = createPlugin(standIn, dataFolder);
+        plugin.getLogger().setLevel(Level.WARNING);
+    }
+
+    @SuppressWarnings({"deprecation", "removal"})
+    private static WorldsPlugin createPlugin(StandInServer standIn, File dataFolder) {
+        return new WorldsPlugin(new JavaPluginLoader(standIn.getServer()),
+                                new PluginDescriptionFile("Worlds", "test", WorldsPlugin.class.getName()),
+                                dataFolder, new File(dataFolder, "Worlds.jar"));
+    }
+
+    @AfterAll
+    static void writeReport() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-12s %-16s %8s %10s %10s %10s %8s %8s",
+                                "scenario", "phase", "ops", "ms", "us/op", "alloc MiB",
+                                "create", "rules"));
+        lines.addAll(REPORT);
+        lines.add("worlds=" + WORLDS + " reloads=" + RELOADS + " gameRules=" + GAME_RULES.size());
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        Path file = Path.of("target", "scale-report.txt");
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Load the configuration, create all AutoLoad worlds, apply them
+     * again and look every world up by name several times.
+     */
+    @Test
+    void startup() throws IOException {
+        writeConfig(WORLDS);
+        measure("startup", "reloadConfig", 1, plugin::reloadConfig);
+        measure("startup", "getWorlds", WORLDS, () -> assertEquals(WORLDS, plugin.getWorlds().size()));
+        measure("startup", "loadAllWorlds", WORLDS, plugin::loadAllWorlds);
+        assertEquals(WORLDS, standIn.getWorldCount());
+        assertEquals(WORLDS, standIn.createWorldCalls.get());
+        if (!GAME_RULES.isEmpty()) assertTrue(standIn.setGameRuleCalls.get() > 0L);
+        measure("startup", "apply", WORLDS, () -> {
+                for (MyWorld myWorld : plugin.getWorlds()) {
+                    myWorld.apply(myWorld.getWorld());
+                }
+            });
+        final int lookups = WORLDS * 10;
+        measure("startup", "worldByName", lookups, () -> {
+                for (int i = 0; i < lookups; i += 1) {
+                    assertNotNull(plugin.worldByName(worldName(i % WORLDS)));
+                }
+                assertNull(plugin.worldByName("missing"));
+            });
+        measure("startup", "tickets", 1, () -> standIn.runUntilIdle(TIMEOUT));
+    }
+
+    /**
+     * Add a world to the config, then request many reloads at once,
+     * over and over. Only one reload may run at a time, every
+     * accepted one must report back, and each new world must be
+     * loaded exactly once.
+     */
+    @Test
+    void reloadStorm() throws IOException {
+        writeConfig(WORLDS);
+        plugin.reloadConfig();
+        plugin.loadAllWorlds();
+        standIn.runUntilIdle(TIMEOUT);
+        final int burst = 10;
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+        final AtomicInteger reported = new AtomicInteger();
+        final List<String> errors = new ArrayList<>();
+        long createdBefore = standIn.createWorldCalls.get();
+        for (int round = 0; round < RELOADS; round += 1) {
+            addWorld("storm_" + round);
+            measure("reloadStorm", "round " + round, burst, () -> {
+                    for (int i = 0; i < burst; i += 1) {
+                        boolean result = plugin.reloadAsync(list -> {
+                                errors.addAll(list);
+                                reported.incrementAndGet();
+                            });
+                        (result ? accepted : refused).incrementAndGet();
+                    }
+                    standIn.runUntil(() -> reported.get() == accepted.get(), TIMEOUT);
+                });
+        }
+        standIn.runUntilIdle(TIMEOUT);
+        assertEquals(List.of(), errors);
+        assertEquals(RELOADS, accepted.get());
+        assertEquals(RELOADS * (burst - 1), refused.get());
+        assertEquals(WORLDS + RELOADS, plugin.getWorlds().size());
+        assertEquals(WORLDS + RELOADS, standIn.getWorldCount());
+        assertEquals(RELOADS, standIn.createWorldCalls.get() - createdBefore);
+        for (int round = 0; round < RELOADS; round += 1) {
+            assertNotNull(plugin.worldByName("storm_" + round));
+        }
+    }
+
+    /**
+     * Import all worlds of the server which are not configured yet,
+     * the same way /worlds import * does, then reload and find them
+     * all. Reading the game rules of a world needs the game rules of
+     * the API. Without them, only the environment and seed are taken
+     * over, so that saving and reloading the imported worlds are
+     * still measured.
+     */
+    @Test
+    void massImport() throws IOException {
+        writeConfig(0);
+        plugin.reloadConfig();
+        for (int i = 0; i < WORLDS; i += 1) {
+            World world = new WorldCreator(worldName(i)).createWorld();
+            if (GAME_RULES.isEmpty()) continue;
+            GameRule<?> rule = GAME_RULES.get(i % GAME_RULES.size());
+            standIn.presetGameRule(world, rule, gameRuleValue(rule, i));
+        }
+        final boolean configure = !GAME_RULES.isEmpty();
+        measure("massImport", configure ? "import" : "import (no rules)", WORLDS, () -> {
+                List<MyWorld> imported = new ArrayList<>();
+                for (World world : standIn.getServer().getWorlds()) {
+                    MyWorld myWorld = plugin.worldOf(world);
+                    if (myWorld == null) myWorld = new MyWorld(plugin, world.getName());
+                    if (configure) {
+                        myWorld.configure(world);
+                    } else {
+                        myWorld.setEnvironment(world.getEnvironment());
+                        myWorld.setSeed(world.getSeed());
+                    }
+                    imported.add(myWorld);
+                }
+                plugin.getWorldFiles().saveAll(imported);
+            });
+        YamlConfiguration saved = YamlConfiguration.loadConfiguration(new File(dataFolder, "config.yml"));
+        assertEquals(WORLDS, saved.getConfigurationSection("worlds").getKeys(false).size());
+        final AtomicInteger reported = new AtomicInteger();
+        final List<String> errors = new ArrayList<>();
+        measure("massImport", "reload", WORLDS, () -> {
+                assertTrue(plugin.reloadAsync(list -> {
+                            errors.addAll(list);
+                            reported.incrementAndGet();
+                        }));
+                standIn.runUntil(() -> reported.get() == 1, TIMEOUT);
+            });
+        assertEquals(List.of(), errors);
+        assertEquals(WORLDS, plugin.getWorlds().size());
+        for (int i = 0; i < WORLDS; i += 1) {
+            assertNotNull(plugin.worldByName(worldName(i)));
+        }
+    }
+
+    private static String worldName(int index) {
+        return String.format("scale_%04d", index);
+    }
+
+    /**
+     * Write a config with the given number of AutoLoad worlds. Every
+     * other world inherits a profile, some keep chunks loaded, and
+     * all of them set game rules if the API provides any.
+     */
+    private void writeConfig(int count) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("safeSpawn.Enabled", false);
+        config.set("jmx.Enabled", false);
+        ConfigurationSection profile = config.createSection("profiles.scale");
+        profile.set("Settings.Difficulty", "NORMAL");
+        profile.set("Settings.PvP", false);
+        if (!GAME_RULES.isEmpty()) {
+            GameRule<?> rule = GAME_RULES.get(0);
+            profile.set("GameRules." + rule.getKey().getKey(), gameRuleValue(rule, 0));
+        }
+        config.createSection("worlds");
+        for (int i = 0; i < count; i += 1) {
+            writeWorld(config.createSection("worlds." + worldName(i)), i);
+        }
+        config.save(new File(dataFolder, "config.yml"));
+    }
+
+    private void addWorld(String name) throws IOException {
+        File file = new File(dataFolder, "config.yml");
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        writeWorld(config.createSection("worlds." + name), 0);
+        config.save(file);
+    }
+
+    private static void writeWorld(ConfigurationSection section, int index) {
+        section.set("AutoLoad", true);
+        section.set("Environment", "NORMAL");
+        if (index % 2 == 0) section.set("Inherit", "scale");
+        section.set("Settings.ViewDistance", 6 + index % 4);
+        if (index % 10 == 0) section.set("KeepLoaded.spawn", List.of(-1, -1, 1, 1));
+        for (int i = 1; i < GAME_RULES.size(); i += 1) {
+            GameRule<?> rule = GAME_RULES.get(i);
+            section.set("GameRules." + rule.getKey().getKey(), gameRuleValue(rule, index + i));
+        }
+    }
+
+    private static Object gameRuleValue(GameRule<?> rule, int index) {
+        return rule.getType() == Boolean.class
+            ? (Object) (index % 2 == 0)
+            : (Object) (index % 5 + 1);
+    }
+
+    /**
+     * Pick a few boolean and integer game rules. With some API
+     * versions, the game rules are a registry which cannot be
+     * initialized without a server implementation. Then there are
+     * none.
+     */
+    private static List<GameRule<?>> sampleGameRules() {
+        List<GameRule<?>> result = new ArrayList<>();
+        try {
+            for (GameRule<?> rule : GameRule.values()) {
+                if (rule.getType() != Boolean.class && rule.getType() != Integer.class) continue;
+                result.add(rule);
+                if (result.size() >= 4) break;
+            }
+        } catch (LinkageError | RuntimeException e) {
+            System.out.println("Game rules unavailable: " + e);
+            return List.of();
+        }
+        return result;
+    }
+
+    private void measure(String scenario, String phase, int ops, Runnable runnable) {
+        final long createWorld = standIn.createWorldCalls.get();
+        final long setGameRule = standIn.setGameRuleCalls.get();
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+        runnable.run();
+        final long nanos = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - bytes;
+        REPORT.add(String.format("%-12s %-16s %8d %10.1f %10.2f %10.1f %8d %8d",
+                                 scenario, phase, ops,
+                                 nanos / 1_000_000.0,
+                                 nanos / 1_000.0 / Math.max(1, ops),
+                                 bytes < 0L ? -1.0 : allocated / (1024.0 * 1024.0),
+                                 standIn.createWorldCalls.get() - createWorld,
+                                 standIn.setGameRuleCalls.get() - setGameRule));
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, or -1 if the JVM
+     * cannot tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean sunBean)) return -1L;
+        if (!sunBean.isThreadAllocatedMemoryEnabled()) return -1L;
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}